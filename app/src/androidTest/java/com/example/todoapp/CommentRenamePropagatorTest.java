@@ -0,0 +1,209 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class CommentRenamePropagatorTest {
+    private static final String TAG = "CommentRenameTest";
+    private static final String DATABASE_NAME = "comment-rename-test.db";
+    private static final int COMMENTS = 500_000;
+    private static final int INSERT_BATCH = 10_000;
+    private static final long TIMEOUT_MS = 10 * 60 * 1000;
+    // A reader waits for at most one batch, never for the whole rename
+    private static final long MAX_READ_MS = 250;
+
+    private Context context;
+    private TaskDatabase database;
+    private CommentRenamePropagator propagator;
+    private SharedPreferences pref;
+    private int userId;
+    private int taskId;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+        // On disk with WAL like the app's own database, so readers and the writer overlap
+        database = Room.databaseBuilder(context, TaskDatabase.class, DATABASE_NAME)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .build();
+        pref = context.getSharedPreferences("TodoAppCommentRenames", Context.MODE_PRIVATE);
+        pref.edit().clear().commit();
+        propagator = new CommentRenamePropagator(context, database);
+
+        userId = (int) database.userDao().insert(new User("author@example.com", "hash", "Old Name"));
+        taskId = (int) database.taskDao().insertAll(listOf(new Task("Busy task", "", 2))).get(0).longValue();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        awaitIdle();
+        pref.edit().clear().commit();
+        database.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void renameReachesHalfAMillionCommentsWithoutBlockingReaders() throws InterruptedException {
+        insertComments(COMMENTS);
+        long start = SystemClock.elapsedRealtime();
+        propagator.rename(userId, "New Name");
+
+        long maxReadMs = 0;
+        int reads = 0;
+        while (!propagator.isIdle()) {
+            long readStart = SystemClock.elapsedRealtime();
+            database.commentDao().getFirstCommentPage(taskId, 20);
+            maxReadMs = Math.max(maxReadMs, SystemClock.elapsedRealtime() - readStart);
+            reads++;
+            assertTrue("rename timed out", SystemClock.elapsedRealtime() - start < TIMEOUT_MS);
+        }
+        Log.d(TAG, "Renamed " + COMMENTS + " comments in " + (SystemClock.elapsedRealtime() - start)
+                + " ms; " + reads + " reads meanwhile, slowest " + maxReadMs + " ms");
+
+        assertEquals(0, countWithName("Old Name"));
+        assertEquals(COMMENTS, countWithName("New Name"));
+        assertTrue("slowest read " + maxReadMs + " ms", maxReadMs <= MAX_READ_MS);
+    }
+
+    @Test
+    public void resumesFromTheSavedPositionAfterProcessDeath() throws InterruptedException {
+        int comments = 5 * CommentRenamePropagator.BATCH_SIZE;
+        insertComments(comments);
+        int resumeAfter = commentIdAt(2 * CommentRenamePropagator.BATCH_SIZE);
+        // What a process killed after two batches leaves behind
+        pref.edit()
+                .putString("name_" + userId, "New Name")
+                .putInt("after_" + userId, resumeAfter)
+                .commit();
+
+        propagator = new CommentRenamePropagator(context, database);
+        propagator.resumePending();
+        awaitIdleOrFail();
+
+        // The batches before the saved position are taken as done and not written again
+        assertEquals(2 * CommentRenamePropagator.BATCH_SIZE, countWithName("Old Name"));
+        assertEquals(comments - 2 * CommentRenamePropagator.BATCH_SIZE, countWithName("New Name"));
+        assertTrue(pref.getAll().isEmpty());
+    }
+
+    @Test
+    public void renamesArrivingAsTheWorkerFinishesAreNotLost() throws InterruptedException {
+        insertComments(CommentRenamePropagator.BATCH_SIZE / 2);
+        // Each rename lands while the previous one is finishing or just finished
+        for (int i = 0; i < 200; i++) {
+            propagator.rename(userId, "Name " + i);
+            if (i % 2 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        awaitIdleOrFail();
+
+        assertEquals(CommentRenamePropagator.BATCH_SIZE / 2, countWithName("Name 199"));
+        assertTrue(pref.getAll().isEmpty());
+    }
+
+    @Test
+    public void otherWritesRunBetweenBatches() throws InterruptedException {
+        insertComments(100 * CommentRenamePropagator.BATCH_SIZE);
+        propagator.rename(userId, "New Name");
+
+        // Queued on the same writer; it must not wait for all hundred batches
+        final AtomicLong finishedAt = new AtomicLong();
+        AppExecutors.getInstance().databaseWrite().execute(new Runnable() {
+            @Override
+            public void run() {
+                database.taskDao().insertAll(listOf(new Task("Written during the rename", "", 1)));
+                finishedAt.set(SystemClock.elapsedRealtime());
+            }
+        });
+        awaitIdleOrFail();
+        long renameDoneAt = SystemClock.elapsedRealtime();
+
+        assertTrue(finishedAt.get() > 0);
+        assertTrue("write waited for the whole rename", finishedAt.get() < renameDoneAt);
+    }
+
+    private void insertComments(final int count) {
+        for (int done = 0; done < count; done += INSERT_BATCH) {
+            final int size = Math.min(INSERT_BATCH, count - done);
+            final long firstTimestamp = done;
+            database.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    List<Comment> comments = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        Comment comment = new Comment(taskId, userId, "Old Name", "Comment " + (firstTimestamp + i));
+                        comment.setTimestamp(firstTimestamp + i);
+                        comments.add(comment);
+                    }
+                    database.commentDao().insertAll(comments);
+                }
+            });
+        }
+    }
+
+    private int countWithName(String name) {
+        Cursor cursor = database.query("SELECT COUNT(*) FROM comment_table WHERE userId = ? AND userFullName = ?",
+                new Object[]{userId, name});
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int commentIdAt(int position) {
+        Cursor cursor = database.query("SELECT id FROM comment_table WHERE userId = ? ORDER BY id LIMIT 1 OFFSET ?",
+                new Object[]{userId, position - 1});
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void awaitIdleOrFail() throws InterruptedException {
+        assertTrue("rename timed out", awaitIdle());
+    }
+
+    private boolean awaitIdle() throws InterruptedException {
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MS;
+        while (!propagator.isIdle()) {
+            if (SystemClock.elapsedRealtime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static <T> List<T> listOf(T item) {
+        List<T> list = new ArrayList<>(1);
+        list.add(item);
+        return list;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.todoapp;
+
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import javax.crypto.SecretKeyFactory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verify latency for each cost setting on the device running the tests. Results are
+ * logged under the tag CredentialsBenchmark.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CredentialsBenchmarkTest {
+    private static final String TAG = "CredentialsBenchmark";
+    private static final int[] COSTS = {Credentials.MIN_ITERATIONS, 25_000, 50_000, 100_000, 200_000};
+    private static final int RUNS = 5;
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private Credentials credentials;
+    private final byte[] salt = new byte[16];
+    // What Credentials itself picks on this device
+    private String algorithm = "PBKDF2WithHmacSHA256";
+    private String prefix = "pbkdf2-sha256";
+
+    @Before
+    public void setUp() {
+        credentials = Credentials.getInstance(ApplicationProvider.getApplicationContext());
+        Arrays.fill(salt, (byte) 7);
+        try {
+            SecretKeyFactory.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            algorithm = "PBKDF2WithHmacSHA1";
+            prefix = "pbkdf2-sha1";
+        }
+    }
+
+    @Test
+    public void verifyLatencyPerCost() throws GeneralSecurityException {
+        long[] medians = new long[COSTS.length];
+        for (int i = 0; i < COSTS.length; i++) {
+            String stored = stored(prefix, algorithm, COSTS[i], Credentials.hashBits(algorithm));
+            medians[i] = medianVerifyMicros(stored);
+            Log.d(TAG, prefix + " cost " + COSTS[i] + ": " + medians[i] / 1000.0 + " ms");
+        }
+        // Cost is linear in iterations, 20x the iterations must be clearly slower
+        assertTrue(Arrays.toString(medians), medians[COSTS.length - 1] > medians[0] * 5);
+    }
+
+    @Test
+    public void calibratedCostVerifiesWithinTheLoginBudget() throws GeneralSecurityException {
+        int cost = credentials.calibrate();
+        String stored = credentials.hash(PASSWORD);
+        long micros = medianVerifyMicros(stored);
+        Log.d(TAG, "calibrated cost " + cost + ": " + micros / 1000.0 + " ms, target "
+                + Credentials.TARGET_VERIFY_MS + " ms");
+        assertTrue(micros / 1000 + " ms", micros / 1000 <= Credentials.LOGIN_BUDGET_MS);
+    }
+
+    @Test
+    public void sha1HashesOneBlockInsteadOfTwo() throws GeneralSecurityException {
+        int cost = 50_000;
+        long oneBlock = medianDeriveMicros("PBKDF2WithHmacSHA1", cost, Credentials.hashBits("PBKDF2WithHmacSHA1"));
+        long twoBlocks = medianDeriveMicros("PBKDF2WithHmacSHA1", cost, 256);
+        Log.d(TAG, "sha1 cost " + cost + ": 160 bits " + oneBlock / 1000.0 + " ms, 256 bits "
+                + twoBlocks / 1000.0 + " ms");
+        // 256 bits of SHA-1 output run PBKDF2 twice, 160 bits once
+        assertTrue(oneBlock + " vs " + twoBlocks, oneBlock * 4 < twoBlocks * 3);
+    }
+
+    @Test
+    public void legacySha1HashesStillVerifyAndGetReplaced() throws GeneralSecurityException {
+        String legacy = stored("pbkdf2-sha1", "PBKDF2WithHmacSHA1", Credentials.MIN_ITERATIONS, 256);
+        assertTrue(credentials.verify(PASSWORD, legacy));
+        assertFalse(credentials.verify("wrong password", legacy));
+        assertTrue(credentials.needsRehash(legacy));
+
+        String current = stored("pbkdf2-sha1", "PBKDF2WithHmacSHA1", Credentials.MIN_ITERATIONS, 160);
+        assertTrue(credentials.verify(PASSWORD, current));
+    }
+
+    @Test
+    public void unknownEmailsCostOneVerificationFromTheFirstMiss() {
+        credentials.calibrate();
+        String stored = credentials.hash(PASSWORD);
+        long wrongPassword = medianWrongPasswordMicros(stored);
+
+        // The startup calibration already prepared the dummy, the first miss pays no extra run
+        long start = SystemClock.elapsedRealtimeNanos();
+        credentials.verifyDummy(PASSWORD);
+        long firstMiss = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+        Log.d(TAG, "wrong password " + wrongPassword / 1000.0 + " ms, first unknown email "
+                + firstMiss / 1000.0 + " ms");
+        assertTrue(firstMiss + " vs " + wrongPassword + " us", firstMiss < wrongPassword * 3 / 2);
+    }
+
+    private String stored(String prefix, String algorithm, int cost, int bits) throws GeneralSecurityException {
+        byte[] hash = Credentials.derive(PASSWORD.toCharArray(), salt, cost, algorithm, bits);
+        return prefix + "$" + cost + "$" + Base64.encodeToString(salt, Base64.NO_WRAP)
+                + "$" + Base64.encodeToString(hash, Base64.NO_WRAP);
+    }
+
+    private long medianVerifyMicros(String stored) {
+        // The first run pays for JIT and provider lookup
+        assertTrue(credentials.verify(PASSWORD, stored));
+        long[] runs = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            assertTrue(credentials.verify(PASSWORD, stored));
+            runs[i] = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+        }
+        Arrays.sort(runs);
+        return runs[RUNS / 2];
+    }
+
+    private long medianWrongPasswordMicros(String stored) {
+        assertFalse(credentials.verify("wrong password", stored));
+        long[] runs = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            assertFalse(credentials.verify("wrong password", stored));
+            runs[i] = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+        }
+        Arrays.sort(runs);
+        return runs[RUNS / 2];
+    }
+
+    private long medianDeriveMicros(String algorithm, int cost, int bits) throws GeneralSecurityException {
+        Credentials.derive(PASSWORD.toCharArray(), salt, cost, algorithm, bits);
+        long[] runs = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            Credentials.derive(PASSWORD.toCharArray(), salt, cost, algorithm, bits);
+            runs[i] = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+        }
+        Arrays.sort(runs);
+        return runs[RUNS / 2];
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class TaskBackupTest {
+    private static final String TAG = "TaskBackupTest";
+    private static final String[] TABLES = {"user_table", "task_table", "comment_table"};
+
+    private static final int USERS = 50;
+    private static final int TASKS = 20_000;
+    private static final int COMMENTS_PER_TASK = 3;
+
+    private Context context;
+    private TaskDatabase database;
+    private TaskBackup backup;
+    private File file;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, TaskDatabase.class).build();
+        backup = new TaskBackup(context, database);
+        file = new File(context.getCacheDir(), "backup-test.tdbk");
+    }
+
+    @After
+    public void tearDown() {
+        new SessionManager(context).logoutUser();
+        database.close();
+        file.delete();
+    }
+
+    @Test
+    public void compressedBackupRestoresEveryRow() throws IOException {
+        roundTrip(true);
+    }
+
+    @Test
+    public void uncompressedBackupRestoresEveryRow() throws IOException {
+        // Uncompressed files are restored through the memory-mapped path
+        roundTrip(false);
+    }
+
+    private void roundTrip(boolean compress) throws IOException {
+        populate();
+        List<List<String>> before = dumpTables();
+
+        int[] exported = export(compress);
+        assertArrayEquals(new int[]{USERS, TASKS, TASKS * COMMENTS_PER_TASK}, exported);
+
+        // Restore replaces whatever is there, including rows the backup doesn't have
+        database.taskDao().insertAll(Arrays.asList(new Task("Added after the backup", "", 1)));
+        int[] restored = restore();
+
+        assertArrayEquals(exported, restored);
+        assertEquals(before, dumpTables());
+    }
+
+    @Test
+    public void binaryExportOutpacesNaiveJsonDump() throws IOException, JSONException {
+        populate();
+
+        long start = System.nanoTime();
+        export(false);
+        long binaryNanos = System.nanoTime() - start;
+        long binaryBytes = file.length();
+
+        start = System.nanoTime();
+        long jsonBytes = dumpJson();
+        long jsonNanos = System.nanoTime() - start;
+
+        int rows = USERS + TASKS + TASKS * COMMENTS_PER_TASK;
+        Log.d(TAG, "binary: " + binaryBytes + " bytes, " + rows * 1_000_000_000L / binaryNanos + " rows/s; "
+                + "json: " + jsonBytes + " bytes, " + rows * 1_000_000_000L / jsonNanos + " rows/s");
+        assertTrue("binary " + binaryBytes + " bytes, json " + jsonBytes, binaryBytes < jsonBytes);
+        assertTrue("binary " + binaryNanos / 1_000_000 + " ms, json " + jsonNanos / 1_000_000 + " ms",
+                binaryNanos < jsonNanos);
+    }
+
+    @Test
+    public void restoreFindsTheSignedInAccountAgainByEmail() throws IOException {
+        populate();
+        User user = database.userDao().getUserByEmail("user7@example.com");
+        export(true);
+
+        // Logged in with an id the backup gives to someone else
+        SessionManager sessionManager = new SessionManager(context);
+        sessionManager.createLoginSession(user.getId() + 1000, user.getEmail(), "Stale Name");
+        restore();
+
+        Session session = sessionManager.getSession();
+        assertTrue(session.isLoggedIn());
+        assertEquals(user.getId(), session.getUserId());
+        assertEquals(user.getFullName(), session.getFullName());
+    }
+
+    @Test
+    public void restoreLogsOutAnAccountTheBackupDoesNotHave() throws IOException {
+        populate();
+        export(true);
+
+        SessionManager sessionManager = new SessionManager(context);
+        sessionManager.createLoginSession(USERS + 1, "newcomer@example.com", "Newcomer");
+        restore();
+
+        assertFalse(sessionManager.getSession().isLoggedIn());
+    }
+
+    @Test
+    public void exportDoesNotHoldTheWriteLock() throws Exception {
+        populate();
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                database.taskDao().insertAll(Arrays.asList(new Task("Written during export", "", 1)));
+            }
+        });
+        OutputStream output = new FileOutputStream(file) {
+            private boolean started;
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                // Part way through the export, a write must get through without waiting for it
+                if (!started) {
+                    started = true;
+                    writer.start();
+                    try {
+                        writer.join(5_000);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    assertFalse("writer blocked by the export", writer.isAlive());
+                }
+                super.write(b, off, len);
+            }
+        };
+        int[] counts;
+        try {
+            counts = backup.export(output, false);
+        } finally {
+            output.close();
+        }
+        // The new task is past the bounds taken at the start, so the backup stays as it was
+        assertEquals(TASKS, counts[1]);
+        assertNotEquals(TASKS, database.taskDao().getTaskStats().getTotal());
+    }
+
+    @Test
+    public void corruptLengthsAreRejectedBeforeAllocating() throws IOException {
+        populate();
+        List<List<String>> before = dumpTables();
+        byte[] table = "task_table".getBytes(StandardCharsets.UTF_8);
+        byte[] column = "id".getBytes(StandardCharsets.UTF_8);
+        byte[] header = {'T', 'D', 'B', 'K', 1, 0};
+
+        // A row claiming 2 GB, in a file of a few bytes
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        record.write(header);
+        record.write(table.length);
+        record.write(table);
+        record.write(1);
+        record.write(column.length);
+        record.write(column);
+        record.write(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+        assertRestoreFails(record.toByteArray());
+
+        // A table name longer than any length a varint can hold as an int
+        ByteArrayOutputStream name = new ByteArrayOutputStream();
+        name.write(header);
+        name.write(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+        assertRestoreFails(name.toByteArray());
+
+        assertRestoreFails(new byte[]{'T', 'D', 'B', 'K', 0, 0, 0});
+        assertEquals(before, dumpTables());
+    }
+
+    private void assertRestoreFails(byte[] content) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+        try {
+            restore();
+            fail("restored a corrupt backup");
+        } catch (IOException expected) {
+            // The transaction rolled back
+        }
+    }
+
+    private int[] export(boolean compress) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            return backup.export(output, compress);
+        } finally {
+            output.close();
+        }
+    }
+
+    private int[] restore() throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            return backup.restore(channel);
+        } finally {
+            input.close();
+        }
+    }
+
+    private void populate() {
+        database.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                List<Integer> userIds = new ArrayList<>();
+                for (int i = 0; i < USERS; i++) {
+                    userIds.add((int) database.userDao().insert(
+                            new User("user" + i + "@example.com", "hash" + i, "User " + i)));
+                }
+                List<Task> tasks = new ArrayList<>(TASKS);
+                for (int i = 0; i < TASKS; i++) {
+                    Task task = new Task(i % 10 == 0 ? null : "Task " + i, "Description of task " + i, 1 + i % 3);
+                    task.setCompleted(i % 4 == 0);
+                    tasks.add(task);
+                }
+                List<Long> taskIds = database.taskDao().insertAll(tasks);
+                List<Comment> comments = new ArrayList<>(TASKS * COMMENTS_PER_TASK);
+                for (int i = 0; i < TASKS; i++) {
+                    for (int j = 0; j < COMMENTS_PER_TASK; j++) {
+                        Integer userId = j == 0 ? null : userIds.get((i + j) % USERS);
+                        Comment comment = new Comment((int) (long) taskIds.get(i), userId,
+                                userId == null ? null : "User " + userId, "Comment " + j + " on task " + i + " ✓");
+                        comments.add(comment);
+                    }
+                }
+                database.commentDao().insertAll(comments);
+            }
+        });
+    }
+
+    // Every row of every table as text, in rowid order
+    private List<List<String>> dumpTables() {
+        List<List<String>> tables = new ArrayList<>();
+        for (String table : TABLES) {
+            List<String> rows = new ArrayList<>();
+            Cursor cursor = database.query("SELECT * FROM `" + table + "` ORDER BY rowid", null);
+            try {
+                while (cursor.moveToNext()) {
+                    StringBuilder row = new StringBuilder();
+                    for (int i = 0; i < cursor.getColumnCount(); i++) {
+                        row.append(cursor.isNull(i) ? "NULL" : cursor.getString(i)).append('|');
+                    }
+                    rows.add(row.toString());
+                }
+            } finally {
+                cursor.close();
+            }
+            tables.add(rows);
+        }
+        return tables;
+    }
+
+    // What a backup usually starts as: every table loaded into JSON objects, then written out
+    private long dumpJson() throws IOException, JSONException {
+        JSONObject root = new JSONObject();
+        for (String table : TABLES) {
+            JSONArray rows = new JSONArray();
+            Cursor cursor = database.query("SELECT * FROM `" + table + "`", null);
+            try {
+                while (cursor.moveToNext()) {
+                    JSONObject row = new JSONObject();
+                    for (int i = 0; i < cursor.getColumnCount(); i++) {
+                        if (cursor.getType(i) == Cursor.FIELD_TYPE_INTEGER) {
+                            row.put(cursor.getColumnName(i), cursor.getLong(i));
+                        } else if (!cursor.isNull(i)) {
+                            row.put(cursor.getColumnName(i), cursor.getString(i));
+                        }
+                    }
+                    rows.put(row);
+                }
+            } finally {
+                cursor.close();
+            }
+            root.put(table, rows);
+        }
+        byte[] json = root.toString().getBytes(StandardCharsets.UTF_8);
+        File jsonFile = new File(context.getCacheDir(), "backup-test.json");
+        OutputStream output = new FileOutputStream(jsonFile);
+        try {
+            output.write(json);
+        } finally {
+            output.close();
+            jsonFile.delete();
+        }
+        return json.length;
+    }
+}
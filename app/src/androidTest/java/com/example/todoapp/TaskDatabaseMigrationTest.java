@@ -0,0 +1,148 @@
+package com.example.todoapp;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Migrates databases built from the exported schemas in app/schemas to the current version.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskDatabaseMigrationTest {
+    private static final String TEST_DB = "migration-test";
+    private static final int FIXTURE_TASKS = 100_000;
+    // Every 10th task has two comments
+    private static final int FIXTURE_COMMENTS = FIXTURE_TASKS / 10 * 2;
+    // First launch after an update must not feel stuck, even on a slow device
+    private static final long MIGRATION_BUDGET_MS = 10_000;
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(),
+            TaskDatabase.class.getCanonicalName(),
+            new FrameworkSQLiteOpenHelperFactory());
+
+    @Test
+    public void migrate3To10_keepsEveryRowWithinBudget() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 3);
+        fillVersion3(db);
+        db.close();
+
+        long start = SystemClock.elapsedRealtime();
+        db = helper.runMigrationsAndValidate(TEST_DB, 10, true, TaskDatabase.ALL_MIGRATIONS);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        assertTrue("Migration took " + elapsed + "ms", elapsed < MIGRATION_BUDGET_MS);
+        assertEquals(FIXTURE_TASKS, count(db, "SELECT COUNT(*) FROM task_table"));
+        assertEquals(FIXTURE_COMMENTS, count(db, "SELECT COUNT(*) FROM comment_table"));
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM task_table WHERE id = 4242 " +
+                "AND title = 'Task 4242' AND description = 'Description 4242' AND priority = 1"));
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM comment_table WHERE taskId = 10 " +
+                "AND userId IS NULL AND userFullName IS NULL"));
+
+        // Search and the comment counters are built from the migrated rows
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM task_fts WHERE task_fts MATCH 'description 4242'"));
+        assertEquals(FIXTURE_COMMENTS, count(db, "SELECT COUNT(*) FROM comment_fts WHERE comment_fts MATCH 'comment'"));
+        assertEquals(FIXTURE_TASKS / 10, count(db, "SELECT COUNT(*) FROM task_activity WHERE commentCount = 2"));
+        db.close();
+    }
+
+    @Test
+    public void migrate9To10_triggersKeepCommentCountsCurrent() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 9);
+        db.execSQL("INSERT INTO task_table (id, title, description, isCompleted, priority) VALUES (1, 'A', '', 0, 2)");
+        db.execSQL("INSERT INTO comment_table (taskId, text, timestamp) VALUES (1, 'old', 100)");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 10, true, TaskDatabase.MIGRATION_9_10);
+        assertEquals(1, count(db, "SELECT commentCount FROM task_activity WHERE taskId = 1"));
+
+        db.execSQL("INSERT INTO comment_table (taskId, text, timestamp) VALUES (1, 'new', 200)");
+        assertEquals(2, count(db, "SELECT commentCount FROM task_activity WHERE taskId = 1"));
+        assertEquals(200, count(db, "SELECT lastCommentAt FROM task_activity WHERE taskId = 1"));
+
+        db.execSQL("DELETE FROM comment_table WHERE text = 'new'");
+        assertEquals(1, count(db, "SELECT commentCount FROM task_activity WHERE taskId = 1"));
+        assertEquals(100, count(db, "SELECT lastCommentAt FROM task_activity WHERE taskId = 1"));
+        db.close();
+    }
+
+    @Test
+    public void migrate8To9_keepsEveryAccountAndTheOldestEmail() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 8);
+        db.execSQL("INSERT INTO user_table (id, email, password, fullName) VALUES (1, 'a@example.com', 'x', 'First')");
+        db.execSQL("INSERT INTO user_table (id, email, password, fullName) VALUES (2, 'a@example.com', 'y', 'Second')");
+        db.execSQL("INSERT INTO user_table (id, email, password, fullName) VALUES (3, 'b@example.com', 'z', 'Other')");
+        db.execSQL("INSERT INTO user_table (id, email, password, fullName) VALUES (4, 'a@example.com', 'w', 'Third')");
+        db.execSQL("INSERT INTO user_table (id, email, password, fullName) VALUES (5, NULL, 'v', 'No email')");
+        db.execSQL("INSERT INTO user_table (id, email, password, fullName) VALUES (6, NULL, 'u', 'No email either')");
+        db.execSQL("INSERT INTO task_table (id, title, description, isCompleted, priority) VALUES (1, 'A', '', 0, 2)");
+        db.execSQL("INSERT INTO comment_table (taskId, userId, userFullName, text, timestamp) " +
+                "VALUES (1, 2, 'Second', 'By the duplicate', 100)");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 9, true, TaskDatabase.MIGRATION_8_9);
+        assertEquals(6, count(db, "SELECT COUNT(*) FROM user_table"));
+        // Login by email still finds the oldest account
+        assertEquals(1, count(db, "SELECT id FROM user_table WHERE email = 'a@example.com'"));
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM user_table WHERE id = 2 AND email = 'a@example.com+dup2'"));
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM user_table WHERE id = 4 AND email = 'a@example.com+dup4'"));
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM user_table WHERE id = 3 AND email = 'b@example.com'"));
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM user_table WHERE email IS NULL"));
+        assertEquals(2, count(db, "SELECT userId FROM comment_table WHERE text = 'By the duplicate'"));
+        db.close();
+    }
+
+    private static void fillVersion3(SupportSQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            SupportSQLiteStatement task = db.compileStatement(
+                    "INSERT INTO task_table (id, title, description, isCompleted, priority) VALUES (?, ?, ?, ?, ?)");
+            SupportSQLiteStatement comment = db.compileStatement(
+                    "INSERT INTO comment_table (taskId, text, timestamp) VALUES (?, ?, ?)");
+            for (int id = 1; id <= FIXTURE_TASKS; id++) {
+                task.bindLong(1, id);
+                task.bindString(2, "Task " + id);
+                task.bindString(3, "Description " + id);
+                task.bindLong(4, id % 3 == 0 ? 1 : 0);
+                task.bindLong(5, id % 3 + 1);
+                task.executeInsert();
+                if (id % 10 == 0) {
+                    for (int i = 0; i < 2; i++) {
+                        comment.bindLong(1, id);
+                        comment.bindString(2, "Comment " + i + " on task " + id);
+                        comment.bindLong(3, 1_000_000L + id * 10L + i);
+                        comment.executeInsert();
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static long count(SupportSQLiteDatabase db, String sql) {
+        Cursor cursor = db.query(sql);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
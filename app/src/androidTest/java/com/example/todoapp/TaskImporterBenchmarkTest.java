@@ -0,0 +1,180 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Imports generated JSON and CSV files of 100k tasks with 500k comments into an on-disk
+ * database set up like the app's. Throughput is logged under the tag TaskImporterBenchmark.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskImporterBenchmarkTest {
+    private static final String TAG = "TaskImporterBenchmark";
+    private static final String DATABASE_NAME = "task-importer-benchmark.db";
+    private static final int TASKS = 100_000;
+    private static final int COMMENTS_PER_TASK = 5;
+    private static final long TIMEOUT_MS = 15 * 60 * 1000;
+
+    private Context context;
+    private TaskDatabase database;
+    private File file;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+        context.getSharedPreferences("TodoAppImport", Context.MODE_PRIVATE).edit().clear().commit();
+        database = Room.databaseBuilder(context, TaskDatabase.class, DATABASE_NAME)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .addCallback(TaskDatabase.CREATE_TRIGGERS)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        context.getSharedPreferences("TodoAppImport", Context.MODE_PRIVATE).edit().clear().commit();
+        database.close();
+        context.deleteDatabase(DATABASE_NAME);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void importsAJsonFile() throws Exception {
+        file = new File(context.getCacheDir(), "benchmark.json");
+        Writer writer = open(file);
+        try {
+            writer.write("{\"tasks\": [\n");
+            for (int i = 0; i < TASKS; i++) {
+                writer.write((i == 0 ? "" : ",\n") + "{\"title\": \"Task " + i + "\", \"description\": \"Imported task "
+                        + i + " with a short description\", \"priority\": " + (i % 3 + 1)
+                        + ", \"completed\": " + (i % 4 == 0) + ", \"comments\": [");
+                for (int c = 0; c < COMMENTS_PER_TASK; c++) {
+                    writer.write((c == 0 ? "" : ", ") + "{\"text\": \"Comment " + c + " on task " + i
+                            + "\", \"author\": \"Author " + c + "\", \"timestamp\": " + (1_600_000_000_000L + i * 10L + c) + "}");
+                }
+                writer.write("]}");
+            }
+            writer.write("\n]}\n");
+        } finally {
+            writer.close();
+        }
+        runImport("JSON");
+    }
+
+    @Test
+    public void importsACsvFile() throws Exception {
+        file = new File(context.getCacheDir(), "benchmark.csv");
+        Writer writer = open(file);
+        try {
+            writer.write("title,description,priority,completed,comment,author,timestamp\n");
+            for (int i = 0; i < TASKS; i++) {
+                for (int c = 0; c < COMMENTS_PER_TASK; c++) {
+                    // The first row carries the task, the rest only add comments to it
+                    writer.write(c == 0
+                            ? "Task " + i + ",\"Imported task " + i + ", with a short description\"," + (i % 3 + 1)
+                            + "," + (i % 4 == 0) + ","
+                            : ",,,,");
+                    writer.write("Comment " + c + " on task " + i + ",Author " + c + ","
+                            + (1_600_000_000_000L + i * 10L + c) + "\n");
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        runImport("CSV");
+    }
+
+    private void runImport(String format) throws InterruptedException {
+        final TaskImporter importer = new TaskImporter(context, database, TaskImporter.DEFAULT_BATCH_SIZE);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicReference<TaskImporter.Progress> last = new AtomicReference<>();
+        final Observer<TaskImporter.Progress> observer = new Observer<TaskImporter.Progress>() {
+            @Override
+            public void onChanged(TaskImporter.Progress progress) {
+                if (progress.isFinished()) {
+                    last.set(progress);
+                    finished.countDown();
+                }
+            }
+        };
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                importer.getProgress().observeForever(observer);
+            }
+        });
+
+        long start = SystemClock.elapsedRealtime();
+        assertTrue(importer.start(Uri.fromFile(file)));
+        assertTrue("import timed out", finished.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        long elapsedMs = Math.max(1, SystemClock.elapsedRealtime() - start);
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                importer.getProgress().removeObserver(observer);
+            }
+        });
+
+        TaskImporter.Progress progress = last.get();
+        Log.d(TAG, format + ": " + TASKS + " tasks, " + TASKS * COMMENTS_PER_TASK + " comments, "
+                + file.length() / 1024 / 1024 + " MB in " + elapsedMs + " ms; "
+                + TASKS * 1000L / elapsedMs + " tasks/s, " + TASKS * COMMENTS_PER_TASK * 1000L / elapsedMs
+                + " comments/s, " + file.length() * 1000 / 1024 / elapsedMs + " KB/s");
+
+        assertEquals(progress.getErrors().toString(), TaskImporter.Progress.State.DONE, progress.getState());
+        assertEquals(TASKS, progress.getTasksImported());
+        assertEquals(TASKS * COMMENTS_PER_TASK, progress.getCommentsImported());
+        assertEquals(0, progress.getRowsSkipped());
+        assertEquals(TASKS, count("SELECT COUNT(*) FROM task_table"));
+        assertEquals(TASKS * COMMENTS_PER_TASK, count("SELECT COUNT(*) FROM comment_table"));
+        assertEquals(TASKS, count("SELECT COUNT(*) FROM task_activity WHERE commentCount = " + COMMENTS_PER_TASK));
+    }
+
+    private static Writer open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private long count(String sql) {
+        Cursor cursor = database.query(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void onMain(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+}
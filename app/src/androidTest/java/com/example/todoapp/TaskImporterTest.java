@@ -0,0 +1,226 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TaskImporterTest {
+    private static final int BATCH_SIZE = 10;
+    private static final long TIMEOUT_S = 60;
+
+    private Context context;
+    private TaskDatabase database;
+    private SharedPreferences checkpoints;
+    private File file;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, TaskDatabase.class).build();
+        checkpoints = context.getSharedPreferences("TodoAppImport", Context.MODE_PRIVATE);
+        checkpoints.edit().clear().commit();
+        file = new File(context.getCacheDir(), "import-test");
+    }
+
+    @After
+    public void tearDown() {
+        checkpoints.edit().clear().commit();
+        database.close();
+        file.delete();
+    }
+
+    @Test
+    public void invalidJsonTasksAreSkippedWithTheirReason() throws Exception {
+        StringBuilder longTitle = new StringBuilder();
+        while (longTitle.length() <= 200) {
+            longTitle.append('x');
+        }
+        write("[\n"
+                + "{\"title\": \"Valid\", \"priority\": \"high\", \"completed\": \"yes\", \"comments\": ["
+                + "{\"text\": \"First\", \"author\": \"Ann\", \"timestamp\": 1000}, {\"text\": \"Second\"}]},\n"
+                + "{\"description\": \"No title\"},\n"
+                + "{\"title\": \"Bad priority\", \"priority\": \"urgent\"},\n"
+                + "{\"title\": \"" + longTitle + "\"},\n"
+                + "{\"title\": \"Empty comment\", \"comments\": [{\"text\": \"  \"}]},\n"
+                + "{\"title\": \"Bad timestamp\", \"comments\": [{\"text\": \"x\", \"timestamp\": \"yesterday\"}]},\n"
+                + "42,\n"
+                + "{\"title\": \"  Trimmed  \", \"priority\": 1, \"completed\": false}\n"
+                + "]");
+
+        TaskImporter.Progress progress = importAndWait(new TaskImporter(context, database, BATCH_SIZE));
+
+        assertEquals(TaskImporter.Progress.State.DONE, progress.getState());
+        assertEquals(2, progress.getTasksImported());
+        assertEquals(2, progress.getCommentsImported());
+        assertEquals(6, progress.getRowsSkipped());
+        assertEquals(Arrays.asList(
+                "Task 2: missing title",
+                "Task 3: invalid priority \"urgent\"",
+                "Task 4: title longer than 200 characters",
+                "Task 5: comment without text",
+                "Task 6: invalid comment timestamp \"yesterday\"",
+                "Task 7: not an object"), progress.getErrors());
+
+        assertEquals(1, count("SELECT COUNT(*) FROM task_table WHERE title = 'Valid' AND priority = 3 AND isCompleted = 1"));
+        assertEquals(1, count("SELECT COUNT(*) FROM task_table WHERE title = 'Trimmed' AND priority = 1 AND isCompleted = 0"));
+        assertEquals(1, count("SELECT COUNT(*) FROM comment_table WHERE text = 'First' AND userFullName = 'Ann' AND timestamp = 1000"));
+        assertEquals(1, count("SELECT COUNT(*) FROM comment_table WHERE text = 'Second' AND userFullName = 'Imported'"));
+    }
+
+    @Test
+    public void invalidCsvRowsAreSkippedWithTheirReason() throws Exception {
+        write("title,description,priority,completed,comment,author,timestamp\r\n"
+                + "\"Say \"\"hi\"\", twice\",\"Line one\nline two\",high,yes,First,Ann,1000\r\n"
+                + ",,,,Second,,\r\n"
+                + "\r\n"
+                + "Bad priority,,urgent,,,,\r\n"
+                + "Bad timestamp,,2,,note,Bob,yesterday\r\n"
+                + "Plain,,low,no,,,\r\n");
+
+        TaskImporter.Progress progress = importAndWait(new TaskImporter(context, database, BATCH_SIZE));
+
+        assertEquals(TaskImporter.Progress.State.DONE, progress.getState());
+        assertEquals(2, progress.getTasksImported());
+        assertEquals(2, progress.getCommentsImported());
+        assertEquals(2, progress.getRowsSkipped());
+        assertEquals(Arrays.asList(
+                "Task 2: invalid priority \"urgent\"",
+                "Task 3: invalid comment timestamp \"yesterday\""), progress.getErrors());
+
+        assertEquals(1, count("SELECT COUNT(*) FROM task_table WHERE title = 'Say \"hi\", twice' "
+                + "AND description = 'Line one\nline two' AND priority = 3 AND isCompleted = 1"));
+        assertEquals(1, count("SELECT COUNT(*) FROM task_table WHERE title = 'Plain' AND priority = 1 AND isCompleted = 0"));
+        assertEquals(2, count("SELECT COUNT(*) FROM comment_table"));
+    }
+
+    @Test
+    public void anInterruptedImportResumesFromItsCheckpoint() throws Exception {
+        int tasks = 5_000;
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < tasks; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"title\": \"Task ").append(i)
+                    .append("\", \"comments\": [{\"text\": \"Comment ").append(i).append("\"}]}");
+        }
+        write(json.append("]").toString());
+
+        // Stopped after the first batches, as leaving the screen does
+        final TaskImporter first = new TaskImporter(context, database, BATCH_SIZE);
+        TaskImporter.Progress stopped = importAndWait(first, new Observer<TaskImporter.Progress>() {
+            @Override
+            public void onChanged(TaskImporter.Progress progress) {
+                if (progress.getTasksImported() > 0) {
+                    first.cancel();
+                }
+            }
+        });
+        assertEquals(TaskImporter.Progress.State.CANCELLED, stopped.getState());
+        int imported = stopped.getTasksImported();
+        assertTrue(imported + " of " + tasks, imported > 0 && imported < tasks);
+        // Every committed task, and nothing uncommitted, is behind the saved position
+        Map<String, ?> saved = checkpoints.getAll();
+        assertEquals(1, saved.size());
+        String checkpointKey = saved.keySet().iterator().next();
+        assertTrue(checkpointKey, checkpointKey.startsWith(Uri.fromFile(file) + "#"));
+        assertEquals(imported, saved.get(checkpointKey));
+        assertEquals(imported, count("SELECT COUNT(*) FROM task_table"));
+
+        // A new importer, as after process death, picks up from there
+        TaskImporter.Progress resumed = importAndWait(new TaskImporter(context, database, BATCH_SIZE));
+        assertEquals(TaskImporter.Progress.State.DONE, resumed.getState());
+        assertEquals(imported, resumed.getResumedFrom());
+        assertEquals(tasks - imported, resumed.getTasksImported());
+        assertEquals(tasks, count("SELECT COUNT(*) FROM task_table"));
+        assertEquals(tasks, count("SELECT COUNT(DISTINCT title) FROM task_table"));
+        assertEquals(tasks, count("SELECT COUNT(*) FROM comment_table"));
+        assertTrue(checkpoints.getAll().isEmpty());
+    }
+
+    private void write(String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private TaskImporter.Progress importAndWait(TaskImporter importer) throws InterruptedException {
+        return importAndWait(importer, null);
+    }
+
+    // Starts the import and returns its final progress; onProgress also sees the updates before it
+    private TaskImporter.Progress importAndWait(final TaskImporter importer,
+                                                final Observer<TaskImporter.Progress> onProgress)
+            throws InterruptedException {
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicReference<TaskImporter.Progress> last = new AtomicReference<>();
+        final Observer<TaskImporter.Progress> observer = new Observer<TaskImporter.Progress>() {
+            @Override
+            public void onChanged(TaskImporter.Progress progress) {
+                if (onProgress != null) {
+                    onProgress.onChanged(progress);
+                }
+                if (progress.isFinished()) {
+                    last.set(progress);
+                    finished.countDown();
+                }
+            }
+        };
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                importer.getProgress().observeForever(observer);
+            }
+        });
+        assertTrue(importer.start(Uri.fromFile(file)));
+        assertTrue("import timed out", finished.await(TIMEOUT_S, TimeUnit.SECONDS));
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                importer.getProgress().removeObserver(observer);
+            }
+        });
+        return last.get();
+    }
+
+    private long count(String sql) {
+        Cursor cursor = database.query(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void onMain(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The header counts from TaskDao.getTaskStats against loading every task and counting in
+ * Java, as the header did before, on 100k rows. Results are logged under the tag
+ * TaskStatsBenchmark.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskStatsBenchmarkTest {
+    private static final String TAG = "TaskStatsBenchmark";
+    private static final String DATABASE_NAME = "task-stats-benchmark.db";
+    private static final int TASKS = 100_000;
+    private static final int INSERT_BATCH = 10_000;
+    private static final int RUNS = 5;
+
+    private Context context;
+    private TaskDatabase database;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+        // On disk, so reading the rows costs what it costs in the app
+        database = Room.databaseBuilder(context, TaskDatabase.class, DATABASE_NAME).build();
+        // Descriptions of a typical length, which the aggregate never has to read
+        StringBuilder description = new StringBuilder();
+        while (description.length() < 200) {
+            description.append("Some notes about the task. ");
+        }
+        for (int done = 0; done < TASKS; done += INSERT_BATCH) {
+            List<Task> tasks = new ArrayList<>(INSERT_BATCH);
+            for (int i = done; i < done + INSERT_BATCH; i++) {
+                Task task = new Task("Task " + i, description.toString(), i % 3 + 1);
+                task.setCompleted(i % 4 == 0);
+                tasks.add(task);
+            }
+            database.taskDao().insertAll(tasks);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void aggregateMatchesAndBeatsClientSideCounting() {
+        TaskStats aggregate = database.taskDao().getTaskStats();
+        TaskStats counted = countClientSide();
+        assertEquals(counted, aggregate);
+        assertEquals(TASKS, aggregate.getTotal());
+
+        long[] aggregateRuns = new long[RUNS];
+        long[] countedRuns = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            database.taskDao().getTaskStats();
+            aggregateRuns[i] = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            countClientSide();
+            countedRuns[i] = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+        }
+        Arrays.sort(aggregateRuns);
+        Arrays.sort(countedRuns);
+        long aggregateMicros = aggregateRuns[RUNS / 2];
+        long countedMicros = countedRuns[RUNS / 2];
+        Log.d(TAG, TASKS + " tasks: aggregate " + aggregateMicros / 1000.0 + " ms, client-side "
+                + countedMicros / 1000.0 + " ms");
+
+        assertTrue(aggregateMicros + " vs " + countedMicros + " us", aggregateMicros * 5 < countedMicros);
+    }
+
+    @Test
+    public void aggregateReadsOnlyTheCoveringIndex() {
+        Cursor cursor = database.query("EXPLAIN QUERY PLAN SELECT COUNT(*), SUM(isCompleted = 1), "
+                + "SUM(priority = 1), SUM(priority = 2), SUM(priority = 3) FROM task_table", null);
+        StringBuilder plan = new StringBuilder();
+        try {
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnIndexOrThrow("detail"))).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        assertTrue(plan.toString(), plan.toString().contains("COVERING INDEX"));
+    }
+
+    // What the header did before: every row loaded into a Task, then counted
+    private TaskStats countClientSide() {
+        List<Task> tasks = new ArrayList<>();
+        Cursor cursor = database.query("SELECT * FROM task_table ORDER BY priority DESC", null);
+        try {
+            int idColumn = cursor.getColumnIndexOrThrow("id");
+            int titleColumn = cursor.getColumnIndexOrThrow("title");
+            int descriptionColumn = cursor.getColumnIndexOrThrow("description");
+            int completedColumn = cursor.getColumnIndexOrThrow("isCompleted");
+            int priorityColumn = cursor.getColumnIndexOrThrow("priority");
+            while (cursor.moveToNext()) {
+                Task task = new Task(cursor.getString(titleColumn), cursor.getString(descriptionColumn),
+                        cursor.getInt(priorityColumn));
+                task.setId(cursor.getInt(idColumn));
+                task.setCompleted(cursor.getInt(completedColumn) != 0);
+                tasks.add(task);
+            }
+        } finally {
+            cursor.close();
+        }
+        int completed = 0;
+        int[] byPriority = new int[4];
+        for (Task task : tasks) {
+            if (task.isCompleted()) {
+                completed++;
+            }
+            byPriority[task.getPriority()]++;
+        }
+        return new TaskStats(tasks.size(), completed, byPriority[1], byPriority[2], byPriority[3]);
+    }
+}
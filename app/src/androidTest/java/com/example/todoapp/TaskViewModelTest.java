@@ -0,0 +1,184 @@
+package com.example.todoapp;
+
+import android.app.Application;
+import android.os.SystemClock;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.paging.PagedList;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The task list keeps one live Room query: counts the paged sources that have observers
+ * and the initial loads QueryMetrics records while the sort order and filters change.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskViewModelTest {
+    private static final String BY_PRIORITY = "TaskDao.loadInitial." + TaskQuery.SortOrder.PRIORITY;
+    private static final String ALPHABETICAL = "TaskDao.loadInitial." + TaskQuery.SortOrder.ALPHABETICAL;
+    private static final long TIMEOUT_MS = 5_000;
+    // Long enough for a load that shouldn't happen to show up
+    private static final long QUIET_MS = 500;
+
+    private TaskDatabase database;
+    private CountingRepository repository;
+    private TaskViewModel viewModel;
+    private final Observer<PagedList<TaskSummary>> observer = new Observer<PagedList<TaskSummary>>() {
+        @Override
+        public void onChanged(PagedList<TaskSummary> tasks) {
+        }
+    };
+
+    // Keeps every LiveData the view model asks for, to see which ones are still observed
+    private static class CountingRepository extends TaskRepository {
+        final List<LiveData<PagedList<TaskSummary>>> sources = new ArrayList<>();
+
+        CountingRepository(TaskDatabase database) {
+            super(database);
+        }
+
+        @Override
+        public LiveData<PagedList<TaskSummary>> getTasks(TaskQuery query) {
+            LiveData<PagedList<TaskSummary>> source = super.getTasks(query);
+            sources.add(source);
+            return source;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Application application = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(application, TaskDatabase.class).build();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            tasks.add(new Task("Task " + i, "", i % 3 + 1));
+        }
+        database.taskDao().insertAll(tasks);
+
+        QueryMetrics.getInstance().reset();
+        repository = new CountingRepository(database);
+        viewModel = new TaskViewModel(application, repository);
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                viewModel.getTasks().observeForever(observer);
+            }
+        });
+        awaitCount(BY_PRIORITY, 1);
+    }
+
+    @After
+    public void tearDown() {
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                viewModel.getTasks().removeObserver(observer);
+            }
+        });
+        database.close();
+    }
+
+    @Test
+    public void onlyTheCurrentQueryIsObservedAfterSortChanges() {
+        for (int i = 0; i < 10; i++) {
+            setSortOrder(i % 2 == 0 ? TaskQuery.SortOrder.ALPHABETICAL : TaskQuery.SortOrder.PRIORITY);
+        }
+
+        assertEquals(11, repository.sources.size());
+        assertEquals(1, activeSources());
+        assertTrue(repository.sources.get(10).hasActiveObservers());
+    }
+
+    @Test
+    public void repeatedSpecsDontRestartTheQuery() {
+        long loads = QueryMetrics.getInstance().getCount(BY_PRIORITY);
+        // Both already what the view model shows
+        setSortOrder(TaskQuery.SortOrder.PRIORITY);
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                viewModel.setShowCompleted(true);
+            }
+        });
+        SystemClock.sleep(QUIET_MS);
+
+        assertEquals(1, repository.sources.size());
+        assertEquals(loads, QueryMetrics.getInstance().getCount(BY_PRIORITY));
+    }
+
+    @Test
+    public void writesRerunOnlyTheCurrentQuery() {
+        setSortOrder(TaskQuery.SortOrder.ALPHABETICAL);
+        awaitCount(ALPHABETICAL, 1);
+        setSortOrder(TaskQuery.SortOrder.PRIORITY);
+        long byPriority = awaitCount(BY_PRIORITY, 2);
+        long alphabetical = QueryMetrics.getInstance().getCount(ALPHABETICAL);
+
+        database.taskDao().insertAll(listOf(new Task("Written later", "", 3)));
+        awaitCount(BY_PRIORITY, byPriority + 1);
+        SystemClock.sleep(QUIET_MS);
+
+        // One reload for the list on screen, none for the sort order left behind
+        assertEquals(byPriority + 1, QueryMetrics.getInstance().getCount(BY_PRIORITY));
+        assertEquals(alphabetical, QueryMetrics.getInstance().getCount(ALPHABETICAL));
+        assertEquals(1, activeSources());
+    }
+
+    private void setSortOrder(final TaskQuery.SortOrder sortOrder) {
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                viewModel.setSortOrder(sortOrder);
+            }
+        });
+    }
+
+    private int activeSources() {
+        final int[] active = new int[1];
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                for (LiveData<PagedList<TaskSummary>> source : repository.sources) {
+                    if (source.hasActiveObservers()) {
+                        active[0]++;
+                    }
+                }
+            }
+        });
+        return active[0];
+    }
+
+    private long awaitCount(String name, long atLeast) {
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MS;
+        long count;
+        while ((count = QueryMetrics.getInstance().getCount(name)) < atLeast) {
+            assertTrue(name + " ran " + count + " times", SystemClock.elapsedRealtime() < deadline);
+            SystemClock.sleep(10);
+        }
+        return count;
+    }
+
+    private static void onMain(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+
+    private static <T> List<T> listOf(T item) {
+        List<T> list = new ArrayList<>(1);
+        list.add(item);
+        return list;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.todoapp;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TaskWriteQueueTest {
+    private static final int RACING_TASKS = 500;
+
+    private TaskDatabase database;
+    private ExecutorService writer;
+    private TaskWriteQueue queue;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, TaskDatabase.class).build();
+        writer = Executors.newSingleThreadExecutor();
+        queue = new TaskWriteQueue(database, writer);
+    }
+
+    @After
+    public void tearDown() {
+        writer.shutdownNow();
+        database.close();
+    }
+
+    @Test
+    public void writesWithinTheWindowShareOneTransaction() throws InterruptedException {
+        int writes = 50;
+        CountingCallback callback = new CountingCallback(writes);
+        for (int i = 0; i < writes; i++) {
+            queue.insertTask(new Task("Task " + i, "", 2), callback);
+        }
+
+        assertTrue(callback.await());
+        assertEquals(writes, callback.completed.get());
+        assertEquals(0, callback.failed.get());
+        assertEquals(1, queue.getTransactionCount());
+        assertEquals(writes, database.taskDao().getFirstPageByPriority(true, 100).size());
+    }
+
+    @Test
+    public void mixedWritesKeepTheirOrderInOneTransaction() throws InterruptedException {
+        CountingCallback inserted = new CountingCallback(1);
+        Task task = new Task("Original", "", 1);
+        queue.insertTask(task, inserted);
+        assertTrue(inserted.await());
+        int before = queue.getTransactionCount();
+
+        CountingCallback callback = new CountingCallback(3);
+        queue.setPriority(task.getId(), 3, callback);
+        queue.setCompleted(task.getId(), true, callback);
+        queue.insertComment(new Comment(task.getId(), null, "Tester", "Done"), callback);
+
+        assertTrue(callback.await());
+        assertEquals(3, callback.completed.get());
+        assertEquals(before + 1, queue.getTransactionCount());
+        Task stored = database.taskDao().findTaskById(task.getId());
+        assertNotNull(stored);
+        assertEquals(3, stored.getPriority());
+        assertTrue(stored.isCompleted());
+    }
+
+    @Test
+    public void failedWriteOnlyFailsItsOwnCallback() throws InterruptedException {
+        CountingCallback good = new CountingCallback(2);
+        CountingCallback bad = new CountingCallback(1);
+        queue.insertTask(new Task("Kept", "", 2), good);
+        // No task 9999, the foreign key rejects this comment
+        queue.insertComment(new Comment(9999, null, "Tester", "Orphan"), bad);
+        queue.insertTask(new Task("Also kept", "", 2), good);
+
+        assertTrue(good.await());
+        assertTrue(bad.await());
+        assertEquals(2, good.completed.get());
+        assertEquals(0, good.failed.get());
+        assertEquals(1, bad.failed.get());
+        assertEquals(2, database.taskDao().getFirstPageByPriority(true, 10).size());
+    }
+
+    @Test
+    public void racingFieldUpdatesDontClobberEachOther() throws InterruptedException {
+        final List<Integer> ids = insertTasks(RACING_TASKS);
+        // Two screens editing the same rows at once: one ticks them off, the other reprioritizes
+        runTogether(new Runnable() {
+            @Override
+            public void run() {
+                for (int id : ids) {
+                    database.taskDao().setCompleted(id, true);
+                }
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                for (int id : ids) {
+                    database.taskDao().setPriority(id, 3);
+                }
+            }
+        });
+
+        assertBothEditsKept(ids);
+    }
+
+    @Test
+    public void racingQueuedEditsDontClobberEachOther() throws InterruptedException {
+        final List<Integer> ids = insertTasks(RACING_TASKS);
+        final CountingCallback callback = new CountingCallback(2 * RACING_TASKS);
+        runTogether(new Runnable() {
+            @Override
+            public void run() {
+                for (int id : ids) {
+                    queue.setCompleted(id, true, callback);
+                }
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                for (int id : ids) {
+                    queue.setPriority(id, 3, callback);
+                }
+            }
+        });
+
+        assertTrue(callback.await());
+        assertEquals(0, callback.failed.get());
+        assertBothEditsKept(ids);
+    }
+
+    private List<Integer> insertTasks(int count) {
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new Task("Task " + i, "", 1));
+        }
+        List<Integer> ids = new ArrayList<>(count);
+        for (long id : database.taskDao().insertAll(tasks)) {
+            ids.add((int) id);
+        }
+        return ids;
+    }
+
+    // Starts both edits at the same moment and waits for them to finish
+    private static void runTogether(final Runnable first, final Runnable second) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService editors = Executors.newFixedThreadPool(2);
+        for (final Runnable edit : new Runnable[]{first, second}) {
+            editors.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    edit.run();
+                }
+            });
+        }
+        start.countDown();
+        editors.shutdown();
+        assertTrue(editors.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    private void assertBothEditsKept(List<Integer> ids) {
+        for (int id : ids) {
+            Task stored = database.taskDao().findTaskById(id);
+            assertNotNull(stored);
+            assertTrue("task " + id + " lost its completion", stored.isCompleted());
+            assertEquals("task " + id + " lost its priority", 3, stored.getPriority());
+        }
+    }
+
+    private static class CountingCallback implements TaskWriteQueue.WriteCallback {
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        private final CountDownLatch latch;
+
+        CountingCallback(int expected) {
+            latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onWriteComplete(long rowId) {
+            completed.incrementAndGet();
+            latch.countDown();
+        }
+
+        @Override
+        public void onWriteFailed(Exception e) {
+            failed.incrementAndGet();
+            latch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Readers paging the task list while a writer keeps inserting comments, once with WAL and
+ * once with a rollback journal. Reader latency percentiles are logged under the tag
+ * WalReaderLatency.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WalReaderLatencyTest {
+    private static final String TAG = "WalReaderLatency";
+    private static final String DATABASE_NAME = "wal-reader-latency.db";
+    private static final int TASKS = 2_000;
+    private static final int READERS = 3;
+    private static final int PAGE_SIZE = 30;
+    private static final int PAGES_PER_SCROLL = 5;
+    // Comments per write transaction, about what a large import batch holds
+    private static final int COMMENTS_PER_WRITE = 200;
+    private static final long DURATION_MS = 5_000;
+
+    private Context context;
+    private TaskDatabase database;
+    private int[] taskIds;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (database != null) {
+            database.close();
+        }
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void walKeepsReadersOffTheWritersLock() throws InterruptedException {
+        long[] wal = readerLatencyMicros(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING);
+        long[] rollback = readerLatencyMicros(RoomDatabase.JournalMode.TRUNCATE);
+        Log.d(TAG, "WAL on:  " + percentiles(wal));
+        Log.d(TAG, "WAL off: " + percentiles(rollback));
+
+        assertTrue("no reads with WAL", wal.length > 0);
+        assertTrue("no reads without WAL", rollback.length > 0);
+        // Without WAL a page waits for the whole write transaction; with it, it never does
+        assertTrue(percentiles(wal) + " vs " + percentiles(rollback),
+                percentile(wal, 99) < percentile(rollback, 99));
+    }
+
+    // Runs the writer and readers together and returns every page's latency, sorted
+    private long[] readerLatencyMicros(RoomDatabase.JournalMode journalMode) throws InterruptedException {
+        open(journalMode);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final List<Long> latencies = new ArrayList<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(READERS + 1);
+
+        threads.execute(new Runnable() {
+            @Override
+            public void run() {
+                await(start);
+                int written = 0;
+                while (running.get()) {
+                    final int first = written;
+                    database.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            List<Comment> comments = new ArrayList<>(COMMENTS_PER_WRITE);
+                            for (int i = first; i < first + COMMENTS_PER_WRITE; i++) {
+                                comments.add(new Comment(taskIds[i % taskIds.length], null, "Writer", "Comment " + i));
+                            }
+                            database.commentDao().insertAll(comments);
+                        }
+                    });
+                    written += COMMENTS_PER_WRITE;
+                }
+            }
+        });
+        for (int r = 0; r < READERS; r++) {
+            threads.execute(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    List<Long> own = new ArrayList<>();
+                    while (running.get()) {
+                        scroll(own);
+                    }
+                    synchronized (latencies) {
+                        latencies.addAll(own);
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        SystemClock.sleep(DURATION_MS);
+        running.set(false);
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(30, TimeUnit.SECONDS));
+        database.close();
+        database = null;
+        context.deleteDatabase(DATABASE_NAME);
+
+        long[] sorted = new long[latencies.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    // The first few pages of the list by priority, as a user scrolling it would load them
+    private void scroll(List<Long> latencies) {
+        TaskDao taskDao = database.taskDao();
+        long pageStart = SystemClock.elapsedRealtimeNanos();
+        List<TaskSummary> page = taskDao.getFirstPageByPriority(true, PAGE_SIZE);
+        latencies.add((SystemClock.elapsedRealtimeNanos() - pageStart) / 1000);
+        for (int i = 1; i < PAGES_PER_SCROLL && !page.isEmpty(); i++) {
+            TaskSummary last = page.get(page.size() - 1);
+            pageStart = SystemClock.elapsedRealtimeNanos();
+            page = taskDao.getPageByPriorityAfter(last.getPriority(), last.getId(), true, PAGE_SIZE);
+            latencies.add((SystemClock.elapsedRealtimeNanos() - pageStart) / 1000);
+        }
+    }
+
+    private void open(RoomDatabase.JournalMode journalMode) {
+        database = Room.databaseBuilder(context, TaskDatabase.class, DATABASE_NAME)
+                .setJournalMode(journalMode)
+                // Comment inserts keep task_activity current, as in the app
+                .addCallback(TaskDatabase.CREATE_TRIGGERS)
+                .build();
+        List<Task> tasks = new ArrayList<>(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            tasks.add(new Task("Task " + i, "", i % 3 + 1));
+        }
+        List<Long> ids = database.taskDao().insertAll(tasks);
+        taskIds = new int[ids.size()];
+        for (int i = 0; i < taskIds.length; i++) {
+            taskIds[i] = ids.get(i).intValue();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static String percentiles(long[] sorted) {
+        return sorted.length + " pages, p50 " + percentile(sorted, 50) + " us, p95 " + percentile(sorted, 95)
+                + " us, p99 " + percentile(sorted, 99) + " us";
+    }
+}
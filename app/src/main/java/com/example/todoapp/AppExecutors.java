@@ -0,0 +1,239 @@
+package com.example.todoapp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * App-wide executors: a pool for database reads, a single writer thread for
+ * database transactions, a pool for CPU work such as diffing and formatting,
+ * a single thread for password hashing, and a poster for the main thread.
+ *
+ * The read pool has two entrances. {@link #databaseRead()} is handed to Room and
+ * paging, which can't handle a rejection, so it never rejects. {@link #diskIO()} is
+ * for the app's own background work and rejects once its share of the queue is full.
+ *
+ * Activities and repositories share these instead of creating their own threads.
+ * Tests can install synchronous executors with {@link #setInstance(AppExecutors)}.
+ */
+public class AppExecutors {
+    private static final int IO_THREADS = 4;
+    private static final int IO_QUEUE_CAPACITY = 256;
+    private static final int CPU_QUEUE_CAPACITY = 128;
+    // A handful of logins or password changes at most, more means something is wrong
+    private static final int CREDENTIALS_QUEUE_CAPACITY = 8;
+
+    private static AppExecutors instance;
+
+    private final InstrumentedExecutor diskIO;
+    private final InstrumentedExecutor databaseRead;
+    private final InstrumentedExecutor databaseWrite;
+    private final InstrumentedExecutor cpu;
+    private final InstrumentedExecutor credentials;
+    private final Executor mainThread;
+
+    @VisibleForTesting
+    public AppExecutors(Executor diskIO, Executor databaseWrite, Executor cpu, Executor credentials,
+                        Executor mainThread) {
+        this(diskIO, 0, databaseWrite, cpu, credentials, mainThread);
+    }
+
+    private AppExecutors(Executor io, int diskIOQueueCapacity, Executor databaseWrite, Executor cpu,
+                         Executor credentials, Executor mainThread) {
+        this.diskIO = new InstrumentedExecutor("diskIO", io, diskIOQueueCapacity);
+        this.databaseRead = new InstrumentedExecutor("databaseRead", io);
+        this.databaseWrite = new InstrumentedExecutor("databaseWrite", databaseWrite);
+        this.cpu = new InstrumentedExecutor("cpu", cpu);
+        this.credentials = new InstrumentedExecutor("credentials", credentials);
+        this.mainThread = mainThread;
+    }
+
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            int cpuThreads = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+            // The queue itself is unbounded, diskIO() enforces its capacity on its own
+            instance = new AppExecutors(
+                    newPool("todo-io", IO_THREADS, Integer.MAX_VALUE), IO_QUEUE_CAPACITY,
+                    newPool("todo-db-write", 1, IO_QUEUE_CAPACITY),
+                    newPool("todo-cpu", cpuThreads, CPU_QUEUE_CAPACITY),
+                    newPool("todo-credentials", 1, CREDENTIALS_QUEUE_CAPACITY),
+                    new MainThreadExecutor());
+        }
+        return instance;
+    }
+
+    // Lets tests run everything synchronously on the calling thread
+    @VisibleForTesting
+    public static synchronized void setInstance(AppExecutors executors) {
+        instance = executors;
+    }
+
+    // Bounded, for work the app submits itself
+    public InstrumentedExecutor diskIO() {
+        return diskIO;
+    }
+
+    // Room's query executor and the paging fetch executor, on the same threads as diskIO
+    public InstrumentedExecutor databaseRead() {
+        return databaseRead;
+    }
+
+    // Single thread for database transactions, so writes never take a reader's thread
+    public InstrumentedExecutor databaseWrite() {
+        return databaseWrite;
+    }
+
+    public InstrumentedExecutor cpu() {
+        return cpu;
+    }
+
+    // Password hashing is slow on purpose, so it never holds up database reads or diffing
+    public InstrumentedExecutor credentials() {
+        return credentials;
+    }
+
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    private static ThreadPoolExecutor newPool(final String name, int threads, int queueCapacity) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        // Idle threads go away, so the pools cost nothing while the app is in the background
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static class MainThreadExecutor implements Executor {
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            mainHandler.post(command);
+        }
+    }
+
+    /**
+     * Wraps an executor and records queue depth, task latency and rejections.
+     */
+    public static class InstrumentedExecutor implements Executor {
+        private final String name;
+        private final Executor delegate;
+        // 0 for no limit of its own
+        private final int maxQueueDepth;
+
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong totalRunNanos = new AtomicLong();
+        private final AtomicLong maxRunNanos = new AtomicLong();
+
+        InstrumentedExecutor(String name, Executor delegate) {
+            this(name, delegate, 0);
+        }
+
+        InstrumentedExecutor(String name, Executor delegate, int maxQueueDepth) {
+            this.name = name;
+            this.delegate = delegate;
+            this.maxQueueDepth = maxQueueDepth;
+        }
+
+        @Override
+        public void execute(@NonNull final Runnable command) {
+            final long enqueuedAt = System.nanoTime();
+            if (queueDepth.incrementAndGet() > maxQueueDepth && maxQueueDepth > 0) {
+                queueDepth.decrementAndGet();
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException(name + " queue is full");
+            }
+            try {
+                delegate.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        long startedAt = System.nanoTime();
+                        queueDepth.decrementAndGet();
+                        totalWaitNanos.addAndGet(startedAt - enqueuedAt);
+                        try {
+                            command.run();
+                        } finally {
+                            long runNanos = System.nanoTime() - startedAt;
+                            totalRunNanos.addAndGet(runNanos);
+                            updateMax(runNanos);
+                            completed.incrementAndGet();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                queueDepth.decrementAndGet();
+                rejected.incrementAndGet();
+                throw e;
+            }
+        }
+
+        private void updateMax(long runNanos) {
+            long max;
+            do {
+                max = maxRunNanos.get();
+            } while (runNanos > max && !maxRunNanos.compareAndSet(max, runNanos));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // Tasks submitted but not started yet
+        public int getQueueDepth() {
+            return queueDepth.get();
+        }
+
+        public long getCompletedCount() {
+            return completed.get();
+        }
+
+        public long getRejectedCount() {
+            return rejected.get();
+        }
+
+        public long getAverageWaitMillis() {
+            long count = completed.get();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count);
+        }
+
+        public long getAverageRunMillis() {
+            long count = completed.get();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRunNanos.get() / count);
+        }
+
+        public long getMaxRunMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxRunNanos.get());
+        }
+
+        @Override
+        public String toString() {
+            return name + "{queued=" + getQueueDepth() + ", completed=" + getCompletedCount()
+                    + ", rejected=" + getRejectedCount() + ", avgWaitMs=" + getAverageWaitMillis()
+                    + ", avgRunMs=" + getAverageRunMillis() + ", maxRunMs=" + getMaxRunMillis() + "}";
+        }
+    }
+}
@@ -2,12 +2,9 @@ package com.example.todoapp;
 
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-
 @Entity(tableName = "comment_table",
         foreignKeys = {
                 @ForeignKey(entity = Task.class,
@@ -18,6 +15,11 @@ import java.util.Locale;
                         parentColumns = "id",
                         childColumns = "userId",
                         onDelete = ForeignKey.SET_NULL)
+        },
+        indices = {
+                // Serves the per-task timeline and the cascade from task deletes
+                @Index(value = {"taskId", "timestamp"}),
+                @Index(value = {"userId"})
         })
 public class Comment {
     @PrimaryKey(autoGenerate = true)
@@ -89,7 +91,6 @@ public class Comment {
     }
 
     public String getFormattedTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+        return CommentTimeFormatter.getInstance().formatAbsolute(timestamp);
     }
 }
\ No newline at end of file
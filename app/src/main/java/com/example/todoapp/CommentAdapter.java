@@ -6,14 +6,35 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.paging.AsyncPagedListDiffer;
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
-import java.util.List;
+public class CommentAdapter extends RecyclerView.Adapter<CommentAdapter.CommentViewHolder>
+        implements RelativeTimeTicker.Listener {
 
-public class CommentAdapter extends RecyclerView.Adapter<CommentAdapter.CommentViewHolder> {
+    static final DiffUtil.ItemCallback<CommentItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<CommentItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull CommentItem oldItem, @NonNull CommentItem newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull CommentItem oldItem, @NonNull CommentItem newItem) {
+            return oldItem.hasSameContent(newItem);
+        }
+    };
 
-    private List<Comment> comments = new ArrayList<>();
+    private final AsyncPagedListDiffer<CommentItem> differ = new AsyncPagedListDiffer<>(
+            new AdapterListUpdateCallback(this),
+            new AsyncDifferConfig.Builder<>(DIFF_CALLBACK)
+                    .setBackgroundThreadExecutor(AppExecutors.getInstance().cpu())
+                    .build());
+    private final CommentTimeFormatter timeFormatter = CommentTimeFormatter.getInstance();
+    private RecyclerView recyclerView;
 
     @NonNull
     @Override
@@ -25,34 +46,84 @@ public class CommentAdapter extends RecyclerView.Adapter<CommentAdapter.CommentV
 
     @Override
     public void onBindViewHolder(@NonNull CommentViewHolder holder, int position) {
-        Comment currentComment = comments.get(position);
-
-        // Set the comment text
-        holder.commentTextView.setText(currentComment.getText());
+        // getItem also triggers loading of older comments near the end
+        CommentItem currentComment = differ.getItem(position);
+        if (currentComment == null) {
+            return;
+        }
 
-        // Set the user name and timestamp
-        String userInfo = currentComment.getUserFullName() + " • " + currentComment.getFormattedTime();
-        holder.userInfoTextView.setText(userInfo);
+        // Everything shown is precomputed, binding only hands over existing Strings.
+        // A re-bind of an unchanged row leaves the views alone.
+        if (holder.boundComment == null || !holder.boundComment.hasSameContent(currentComment)) {
+            holder.commentTextView.setText(currentComment.getText());
+            holder.userInfoTextView.setText(currentComment.getAuthorLabel());
+        }
+        holder.boundComment = currentComment;
+        holder.timestamp = currentComment.getTimestamp();
+        holder.absoluteTimeLabel = currentComment.getAbsoluteTimeLabel();
+        holder.bindTime(timeFormatter, System.currentTimeMillis());
     }
 
     @Override
     public int getItemCount() {
-        return comments.size();
+        return differ.getItemCount();
     }
 
-    public void setComments(List<Comment> comments) {
-        this.comments = comments;
-        notifyDataSetChanged();
+    public void submitList(PagedList<CommentItem> comments) {
+        differ.submitList(comments);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        this.recyclerView = recyclerView;
+        RelativeTimeTicker.getInstance().addListener(this);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        RelativeTimeTicker.getInstance().removeListener(this);
+        this.recyclerView = null;
+        super.onDetachedFromRecyclerView(recyclerView);
+    }
+
+    // Only rows on screen are refreshed, the rest get the current label when bound
+    @Override
+    public void onMinuteTick(long now) {
+        if (recyclerView == null) {
+            return;
+        }
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            if (holder instanceof CommentViewHolder) {
+                ((CommentViewHolder) holder).bindTime(timeFormatter, now);
+            }
+        }
     }
 
     static class CommentViewHolder extends RecyclerView.ViewHolder {
         private TextView commentTextView;
         private TextView userInfoTextView;
+        private TextView timeTextView;
+        private CommentItem boundComment;
+        private long timestamp;
+        private String absoluteTimeLabel;
+        // The label currently shown; formatter labels are shared instances
+        private String timeLabel;
 
         public CommentViewHolder(@NonNull View itemView) {
             super(itemView);
             commentTextView = itemView.findViewById(R.id.commentText);
             userInfoTextView = itemView.findViewById(R.id.userInfoTextView);
+            timeTextView = itemView.findViewById(R.id.commentTimeTextView);
+        }
+
+        void bindTime(CommentTimeFormatter formatter, long now) {
+            String label = formatter.format(timestamp, absoluteTimeLabel, now);
+            if (label != timeLabel) {
+                timeLabel = label;
+                timeTextView.setText(label);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,5 @@
 package com.example.todoapp;
 
-import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
@@ -20,9 +19,38 @@ public interface CommentDao {
     @Delete
     void delete(Comment comment);
 
-    @Query("SELECT * FROM comment_table WHERE taskId = :taskId ORDER BY timestamp DESC")
-    LiveData<List<Comment>> getCommentsForTask(int taskId);
+    @Insert
+    List<Long> insertAll(List<Comment> comments);
+
+    @Update
+    void updateAll(List<Comment> comments);
+
+    @Delete
+    void deleteAll(List<Comment> comments);
+
+    // Keyset pages of a task's timeline, newest first, served by index_comment_table_taskId_timestamp
+    @Query("SELECT * FROM comment_table WHERE taskId = :taskId " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<Comment> getFirstCommentPage(int taskId, int limit);
+
+    @Query("SELECT * FROM comment_table WHERE taskId = :taskId " +
+            "AND timestamp <= :timestamp AND (timestamp < :timestamp OR id < :id) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<Comment> getCommentPageAfter(int taskId, long timestamp, int id, int limit);
+
+    // Returned in reverse order (closest to the key first)
+    @Query("SELECT * FROM comment_table WHERE taskId = :taskId " +
+            "AND timestamp >= :timestamp AND (timestamp > :timestamp OR id > :id) " +
+            "ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    List<Comment> getCommentPageBefore(int taskId, long timestamp, int id, int limit);
 
     @Query("DELETE FROM comment_table WHERE taskId = :taskId")
     void deleteAllCommentsForTask(int taskId);
+
+    // A user's comments in id order, walked by index_comment_table_userId (the index carries the id)
+    @Query("SELECT id FROM comment_table WHERE userId = :userId AND id > :afterId ORDER BY id LIMIT :limit")
+    List<Integer> getCommentIdsByUser(int userId, int afterId, int limit);
+
+    @Query("UPDATE comment_table SET userFullName = :fullName WHERE id IN (:ids)")
+    int setUserFullName(List<Integer> ids, String fullName);
 }
\ No newline at end of file
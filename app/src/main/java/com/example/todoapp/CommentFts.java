@@ -0,0 +1,19 @@
+package com.example.todoapp;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+// Full-text index over comment text, kept in sync with comment_table by Room's triggers
+@Fts4(contentEntity = Comment.class)
+@Entity(tableName = "comment_fts")
+public class CommentFts {
+    private String text;
+
+    public CommentFts(String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.todoapp;
+
+import android.text.TextUtils;
+
+/**
+ * A comment ready for display.
+ *
+ * Built on the paging fetch thread, so the author label and the absolute time are
+ * formatted once per row instead of on every bind. Which of the absolute or relative
+ * time is shown is decided when bound, since relative times change as the row stays on screen.
+ */
+public class CommentItem {
+    private final int id;
+    private final String text;
+    private final String authorLabel;
+    private final long timestamp;
+    private final String absoluteTimeLabel;
+
+    public CommentItem(Comment comment) {
+        this.id = comment.getId();
+        this.text = comment.getText();
+        String author = comment.getUserFullName();
+        this.authorLabel = (TextUtils.isEmpty(author) ? "Unknown" : author) + " • ";
+        this.timestamp = comment.getTimestamp();
+        // Also for recent rows: they turn absolute after a day, possibly while on screen
+        this.absoluteTimeLabel = CommentTimeFormatter.getInstance().formatAbsolute(timestamp);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getAuthorLabel() {
+        return authorLabel;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getAbsoluteTimeLabel() {
+        return absoluteTimeLabel;
+    }
+
+    public boolean hasSameContent(CommentItem other) {
+        return timestamp == other.timestamp
+                && TextUtils.equals(text, other.text)
+                && TextUtils.equals(authorLabel, other.authorLabel);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.todoapp;
+
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.paging.ItemKeyedDataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pages one task's comments newest first, keyed by (timestamp, id).
+ *
+ * Every page is an index seek on (taskId, timestamp), so opening a task
+ * with thousands of comments only reads the first page. A source given a
+ * prefetched first page serves its initial load from it without a query.
+ */
+public class CommentKeysetDataSource extends ItemKeyedDataSource<Comment, Comment> {
+
+    private final CommentDao commentDao;
+    private final int taskId;
+    private List<Comment> prefetchedPage;
+
+    // Created by the paging fetch thread and invalidated when comment_table changes
+    public CommentKeysetDataSource(TaskDatabase database, int taskId) {
+        this(database, taskId, null);
+        WeakInvalidationObserver.register(database.getInvalidationTracker(), this, "comment_table");
+    }
+
+    /**
+     * A source for the first frame only, serving a prefetched page. It is built on the main
+     * thread, so it doesn't watch the table: registering an observer writes to the database.
+     * The live list from {@link Factory} replaces it as soon as that has loaded. The page must
+     * be the newest comments, as getFirstCommentPage returns them.
+     */
+    public CommentKeysetDataSource(TaskDatabase database, int taskId, List<Comment> prefetchedPage) {
+        this.prefetchedPage = prefetchedPage;
+        this.commentDao = database.commentDao();
+        this.taskId = taskId;
+    }
+
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams<Comment> params,
+                            @NonNull LoadInitialCallback<Comment> callback) {
+        Comment key = params.requestedInitialKey;
+        List<Comment> prefetched = prefetchedPage;
+        // Used once. A page shorter than the prefetch limit holds every comment the task has
+        prefetchedPage = null;
+        if (key == null && prefetched != null && (prefetched.size() >= params.requestedLoadSize
+                || prefetched.size() < TaskRepository.COMMENT_INITIAL_LOAD_SIZE)) {
+            callback.onResult(new ArrayList<>(prefetched.subList(0,
+                    Math.min(prefetched.size(), params.requestedLoadSize))));
+            return;
+        }
+        long start = QueryMetrics.now();
+        List<Comment> comments;
+        if (key == null) {
+            comments = commentDao.getFirstCommentPage(taskId, params.requestedLoadSize);
+        } else {
+            // Reload a window around the previous list's position: up to half the load of
+            // newer comments, then the key row itself and the older ones after it
+            comments = commentDao.getCommentPageBefore(taskId, key.getTimestamp(),
+                    key.getId(), params.requestedLoadSize / 2);
+            Collections.reverse(comments);
+            comments.addAll(commentDao.getCommentPageAfter(taskId, key.getTimestamp(),
+                    key.getId() + 1, params.requestedLoadSize - comments.size()));
+        }
+        QueryMetrics.getInstance().record("CommentDao.loadInitial", start, comments.size());
+        callback.onResult(comments);
+    }
+
+    @Override
+    public void loadAfter(@NonNull LoadParams<Comment> params, @NonNull LoadCallback<Comment> callback) {
+        long start = QueryMetrics.now();
+        List<Comment> comments = commentDao.getCommentPageAfter(taskId, params.key.getTimestamp(),
+                params.key.getId(), params.requestedLoadSize);
+        QueryMetrics.getInstance().record("CommentDao.loadAfter", start, comments.size());
+        callback.onResult(comments);
+    }
+
+    @Override
+    public void loadBefore(@NonNull LoadParams<Comment> params, @NonNull LoadCallback<Comment> callback) {
+        long start = QueryMetrics.now();
+        List<Comment> comments = commentDao.getCommentPageBefore(taskId, params.key.getTimestamp(),
+                params.key.getId(), params.requestedLoadSize);
+        QueryMetrics.getInstance().record("CommentDao.loadBefore", start, comments.size());
+        // The query walks away from the key, the list expects display order
+        Collections.reverse(comments);
+        callback.onResult(comments);
+    }
+
+    @NonNull
+    @Override
+    public Comment getKey(@NonNull Comment item) {
+        return item;
+    }
+
+    public static class Factory extends DataSource.Factory<Comment, Comment> {
+        private final TaskDatabase database;
+        private final int taskId;
+
+        public Factory(TaskDatabase database, int taskId) {
+            this.database = database;
+            this.taskId = taskId;
+        }
+
+        @NonNull
+        @Override
+        public DataSource<Comment, Comment> create() {
+            return new CommentKeysetDataSource(database, taskId);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Copies a user's new full name into the userFullName column of their comments.
+ *
+ * Comments carry the author's name so the list renders without a join, which means a
+ * rename has to reach every existing comment. The update walks the user's comments in
+ * id order, {@link #BATCH_SIZE} rows per short transaction on the writer thread, so the
+ * write lock is never held for long and other writes run between batches. The pending
+ * name and the last id done are saved after each batch, and {@link #resumePending()}
+ * continues after process death. Re-running a batch only writes the same name again,
+ * so a crash between commit and save is harmless.
+ */
+public class CommentRenamePropagator {
+    private static final String TAG = "CommentRename";
+    private static final String PREF_NAME = "TodoAppCommentRenames";
+    private static final String KEY_NAME_PREFIX = "name_";
+    private static final String KEY_AFTER_PREFIX = "after_";
+
+    static final int BATCH_SIZE = 500;
+
+    private static CommentRenamePropagator instance;
+
+    private final Context context;
+    private final TaskDatabase database;
+    private final CommentDao commentDao;
+    private final SharedPreferences pref;
+    private final Object lock = new Object();
+    // At most one batch queued or running; batches continue while any rename is pending
+    private boolean running;
+
+    private CommentRenamePropagator(Context context) {
+        this(context, TaskDatabase.getInstance(context));
+    }
+
+    @VisibleForTesting
+    CommentRenamePropagator(Context context, TaskDatabase database) {
+        this.context = context.getApplicationContext();
+        this.database = database;
+        commentDao = database.commentDao();
+        pref = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized CommentRenamePropagator getInstance(Context context) {
+        if (instance == null) {
+            instance = new CommentRenamePropagator(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // A later rename of the same user replaces the pending one and starts over from the first comment
+    public void rename(int userId, String fullName) {
+        synchronized (lock) {
+            pref.edit()
+                    .putString(KEY_NAME_PREFIX + userId, fullName)
+                    .putInt(KEY_AFTER_PREFIX + userId, 0)
+                    .commit();
+        }
+        start();
+    }
+
+    // Picks up renames that were cut short, called at startup
+    public void resumePending() {
+        if (nextPendingUser() != -1) {
+            start();
+        }
+    }
+
+    // True once every pending rename has reached all comments, or the worker stopped on an error
+    boolean isIdle() {
+        synchronized (lock) {
+            return !running;
+        }
+    }
+
+    private void start() {
+        synchronized (lock) {
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        scheduleBatch();
+    }
+
+    // One batch per task on the writer thread, queued again after each, so other writes
+    // get the writer between batches
+    private void scheduleBatch() {
+        try {
+            AppExecutors.getInstance().databaseWrite().execute(new Runnable() {
+                @Override
+                public void run() {
+                    runBatch();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The saved position stays, the next rename or startup continues from it
+            Log.e(TAG, "Cannot schedule comment name update: " + e.getMessage(), e);
+            synchronized (lock) {
+                running = false;
+            }
+        }
+    }
+
+    private void runBatch() {
+        int userId;
+        synchronized (lock) {
+            // Checked under the lock rename() saves under, so a rename saved after this
+            // either is seen here or finds the worker stopped and starts a new one
+            userId = nextPendingUser();
+            if (userId == -1) {
+                running = false;
+                return;
+            }
+        }
+        try {
+            propagateBatch(userId);
+        } catch (Exception e) {
+            // The saved position stays, the next rename or startup continues from it
+            Log.e(TAG, "Error updating comment names: " + e.getMessage(), e);
+            synchronized (lock) {
+                running = false;
+            }
+            return;
+        }
+        scheduleBatch();
+    }
+
+    // Updates the next batch of one user's comments in one transaction, then saves how far it got
+    private void propagateBatch(final int userId) {
+        final String fullName;
+        final int afterId;
+        synchronized (lock) {
+            fullName = pref.getString(KEY_NAME_PREFIX + userId, null);
+            afterId = pref.getInt(KEY_AFTER_PREFIX + userId, 0);
+        }
+        if (fullName == null) {
+            return;
+        }
+
+        long start = QueryMetrics.now();
+        final int[] lastId = {afterId};
+        final int[] count = new int[1];
+        database.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                List<Integer> ids = commentDao.getCommentIdsByUser(userId, afterId, BATCH_SIZE);
+                if (!ids.isEmpty()) {
+                    commentDao.setUserFullName(ids, fullName);
+                    lastId[0] = ids.get(ids.size() - 1);
+                }
+                count[0] = ids.size();
+            }
+        });
+        QueryMetrics.getInstance().record("CommentRenamePropagator.batch", start, count[0]);
+        // The counters the detail cache rechecks don't change with a name
+        if (count[0] > 0) {
+            TaskDetailCache.getInstance(context).evictCommentsBy(userId);
+        }
+
+        synchronized (lock) {
+            // A newer rename came in during the batch, leave its fresh start alone
+            if (!fullName.equals(pref.getString(KEY_NAME_PREFIX + userId, null))
+                    || pref.getInt(KEY_AFTER_PREFIX + userId, 0) != afterId) {
+                return;
+            }
+            if (count[0] < BATCH_SIZE) {
+                pref.edit()
+                        .remove(KEY_NAME_PREFIX + userId)
+                        .remove(KEY_AFTER_PREFIX + userId)
+                        .commit();
+                Log.d(TAG, "Updated the name on the comments of user " + userId);
+            } else {
+                pref.edit().putInt(KEY_AFTER_PREFIX + userId, lastId[0]).commit();
+            }
+        }
+    }
+
+    private int nextPendingUser() {
+        synchronized (lock) {
+            for (Map.Entry<String, ?> entry : pref.getAll().entrySet()) {
+                if (entry.getKey().startsWith(KEY_NAME_PREFIX)) {
+                    try {
+                        return Integer.parseInt(entry.getKey().substring(KEY_NAME_PREFIX.length()));
+                    } catch (NumberFormatException e) {
+                        Log.e(TAG, "Ignoring bad rename entry " + entry.getKey());
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+}
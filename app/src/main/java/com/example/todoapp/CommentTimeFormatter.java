@@ -0,0 +1,114 @@
+package com.example.todoapp;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Formats comment timestamps without allocating on the bind path.
+ *
+ * Absolute times are cached by minute, since every timestamp within a minute formats
+ * the same; the cache is keyed by the primitive minute so a hit allocates nothing.
+ * Display models format their absolute label once on the fetch thread and pass it to
+ * {@link #format(long, String, long)} when bound. Relative labels ("5m ago", "3h ago")
+ * come from fixed tables, so repeated calls return the same String instances and
+ * callers can compare them by identity. Safe to call from any thread.
+ */
+public class CommentTimeFormatter {
+    static final long MINUTE_MS = 60_000L;
+    private static final int MINUTES_PER_HOUR = 60;
+    private static final int HOURS_PER_DAY = 24;
+    // Power of two, a minute's slot is its low bits
+    private static final int CACHED_MINUTES = 512;
+
+    private static CommentTimeFormatter instance;
+
+    // Direct-mapped: a minute evicts whichever minute shared its slot, guarded by this
+    private final long[] cachedMinutes = new long[CACHED_MINUTES];
+    private final String[] cachedLabels = new String[CACHED_MINUTES];
+    // SimpleDateFormat isn't thread-safe, each thread gets its own
+    private final ThreadLocal<SimpleDateFormat> dateFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
+        }
+    };
+    private final String[] minutesAgo = new String[MINUTES_PER_HOUR];
+    private final String[] hoursAgo = new String[HOURS_PER_DAY];
+
+    private CommentTimeFormatter() {
+        minutesAgo[0] = "just now";
+        for (int i = 1; i < MINUTES_PER_HOUR; i++) {
+            minutesAgo[i] = i + "m ago";
+        }
+        for (int i = 1; i < HOURS_PER_DAY; i++) {
+            hoursAgo[i] = i + "h ago";
+        }
+    }
+
+    public static synchronized CommentTimeFormatter getInstance() {
+        if (instance == null) {
+            instance = new CommentTimeFormatter();
+        }
+        return instance;
+    }
+
+    public String formatAbsolute(long timestamp) {
+        long minute = timestamp / MINUTE_MS;
+        int slot = (int) (minute & (CACHED_MINUTES - 1));
+        synchronized (this) {
+            String cached = cachedLabels[slot];
+            if (cached != null && cachedMinutes[slot] == minute) {
+                return cached;
+            }
+        }
+        // Formatted outside the lock, two threads racing for a minute produce equal labels
+        String formatted = dateFormat.get().format(new Date(minute * MINUTE_MS));
+        synchronized (this) {
+            cachedMinutes[slot] = minute;
+            cachedLabels[slot] = formatted;
+        }
+        return formatted;
+    }
+
+    // Relative for the last day, absolute after that
+    public String format(long timestamp, long now) {
+        String relative = formatRelative(timestamp, now);
+        return relative != null ? relative : formatAbsolute(timestamp);
+    }
+
+    // For the bind path: the absolute label was formatted with the model, so nothing is looked up
+    public String format(long timestamp, String absoluteLabel, long now) {
+        String relative = formatRelative(timestamp, now);
+        return relative != null ? relative : absoluteLabel;
+    }
+
+    /**
+     * Identifies the label format(timestamp, now) returns: equal keys for the same
+     * timestamp mean an equal label, so callers can skip rebuilding text around it.
+     */
+    public static int labelKey(long timestamp, long now) {
+        long minutes = Math.max(0, (now - timestamp) / MINUTE_MS);
+        if (minutes < MINUTES_PER_HOUR) {
+            return (int) minutes;
+        }
+        long hours = minutes / MINUTES_PER_HOUR;
+        if (hours < HOURS_PER_DAY) {
+            return MINUTES_PER_HOUR + (int) hours;
+        }
+        // Absolute, fixed for a given timestamp
+        return -1;
+    }
+
+    private String formatRelative(long timestamp, long now) {
+        long minutes = Math.max(0, (now - timestamp) / MINUTE_MS);
+        if (minutes < MINUTES_PER_HOUR) {
+            return minutesAgo[(int) minutes];
+        }
+        long hours = minutes / MINUTES_PER_HOUR;
+        if (hours < HOURS_PER_DAY) {
+            return hoursAgo[(int) hours];
+        }
+        return null;
+    }
+}
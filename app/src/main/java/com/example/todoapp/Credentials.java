@@ -0,0 +1,244 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 password hashes.
+ *
+ * The iteration count is calibrated once per install so verifying a password takes about
+ * {@link #TARGET_VERIFY_MS} on this device, and stored with each hash so older hashes
+ * keep verifying after a recalibration. Stored values look like
+ * {@code pbkdf2-sha256$iterations$salt$hash}; anything else is a plaintext password
+ * from before hashing, which {@link #needsRehash(String)} reports so login can replace it.
+ *
+ * Hashing is deliberately slow: call these methods on {@link AppExecutors#credentials()},
+ * never on the main thread or the database pools.
+ */
+public class Credentials {
+    private static final String TAG = "Credentials";
+    private static final String PREF_NAME = "TodoAppCredentials";
+    private static final String KEY_ITERATIONS = "pbkdf2Iterations";
+
+    static final long TARGET_VERIFY_MS = 100;
+    // Login work beyond this is logged as over budget
+    static final long LOGIN_BUDGET_MS = 300;
+    static final int MIN_ITERATIONS = 10_000;
+    static final int MAX_ITERATIONS = 600_000;
+    private static final int CALIBRATION_ITERATIONS = 5_000;
+    private static final int SALT_BYTES = 16;
+    // PBKDF2 output beyond the PRF's own size costs a full extra run for no attacker cost,
+    // so each algorithm produces exactly one block
+    private static final int SHA256_HASH_BITS = 256;
+    private static final int SHA1_HASH_BITS = 160;
+
+    private static Credentials instance;
+
+    private final SharedPreferences pref;
+    private final SecureRandom random = new SecureRandom();
+    private final String algorithm;
+    private final String prefix;
+    private volatile int iterations;
+    // Verified against when the email is unknown, so a miss costs as much as a wrong password
+    private volatile String dummyHash;
+
+    private Credentials(Context context) {
+        pref = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        // HMAC-SHA256 PBKDF2 needs API 26, older devices fall back to HMAC-SHA1
+        String chosen = "PBKDF2WithHmacSHA256";
+        try {
+            SecretKeyFactory.getInstance(chosen);
+        } catch (NoSuchAlgorithmException e) {
+            chosen = "PBKDF2WithHmacSHA1";
+        }
+        algorithm = chosen;
+        prefix = chosen.equals("PBKDF2WithHmacSHA256") ? "pbkdf2-sha256" : "pbkdf2-sha1";
+        iterations = pref.getInt(KEY_ITERATIONS, 0);
+    }
+
+    public static synchronized Credentials getInstance(Context context) {
+        if (instance == null) {
+            instance = new Credentials(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Measures this device once and stores the iteration count that hits the target time,
+     * then prepares the dummy hash for unknown emails at that cost.
+     * Runs at startup; if a password is hashed first, it calibrates then.
+     */
+    public synchronized int calibrate() {
+        if (iterations == 0) {
+            iterations = measureIterations();
+        }
+        if (dummyHash == null) {
+            dummyHash = newDummyHash(iterations);
+        }
+        return iterations;
+    }
+
+    private int measureIterations() {
+        byte[] salt = newSalt();
+        char[] probe = "calibration".toCharArray();
+        long best = Long.MAX_VALUE;
+        try {
+            // Best of three, the first run also pays for JIT and provider lookup
+            for (int i = 0; i < 3; i++) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                derive(probe, salt, CALIBRATION_ITERATIONS, algorithm, hashBits(algorithm));
+                best = Math.min(best, SystemClock.elapsedRealtimeNanos() - start);
+            }
+        } catch (GeneralSecurityException e) {
+            Log.e(TAG, "Error calibrating password hashing: " + e.getMessage(), e);
+            best = 0;
+        }
+        long targetNanos = TARGET_VERIFY_MS * 1_000_000;
+        long scaled = best > 0 ? CALIBRATION_ITERATIONS * targetNanos / best : MIN_ITERATIONS;
+        int calibrated = (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, scaled / 1000 * 1000));
+        pref.edit().putInt(KEY_ITERATIONS, calibrated).apply();
+        Log.d(TAG, "Calibrated " + algorithm + " to " + calibrated + " iterations");
+        return calibrated;
+    }
+
+    public String hash(String password) {
+        int cost = iterations > 0 ? iterations : calibrate();
+        byte[] salt = newSalt();
+        try {
+            byte[] hash = derive(password.toCharArray(), salt, cost, algorithm, hashBits(algorithm));
+            return prefix + "$" + cost + "$" + encode(salt) + "$" + encode(hash);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Password hashing unavailable", e);
+        }
+    }
+
+    /**
+     * Checks a password against a stored value, hashed or legacy plaintext, in time that
+     * doesn't depend on where the two differ.
+     */
+    public boolean verify(String password, String stored) {
+        long start = QueryMetrics.now();
+        boolean matches;
+        String[] parts = stored != null ? stored.split("\\$") : new String[0];
+        if (parts.length == 4 && isHashPrefix(parts[0])) {
+            matches = verifyHash(password, parts);
+        } else {
+            matches = stored != null && constantTimeEquals(
+                    password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        QueryMetrics.getInstance().record("Credentials.verify", start, 1);
+        return matches;
+    }
+
+    // Spends the same time as a real verification, for unknown emails
+    public void verifyDummy(String password) {
+        String dummy = dummyHash;
+        if (dummy == null) {
+            // Only before the startup calibration has run; this adds no PBKDF2 run either
+            calibrate();
+            dummy = dummyHash;
+        }
+        verify(password, dummy);
+    }
+
+    // Plaintext rows, hashes weaker than the current calibration and SHA-1 hashes written
+    // at 256 bits before the length followed the algorithm get replaced on login
+    public boolean needsRehash(String stored) {
+        if (stored == null) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !parts[0].equals(prefix)) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(parts[1]) < iterations
+                    || Base64.decode(parts[3], Base64.NO_WRAP).length * 8 != hashBits(algorithm);
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    // Logs logins that took longer than the budget, e.g. after the device got slower
+    public void checkBudget(long startNanos) {
+        long elapsedMs = (QueryMetrics.now() - startNanos) / 1_000_000;
+        if (elapsedMs > LOGIN_BUDGET_MS) {
+            Log.w(TAG, "Login took " + elapsedMs + "ms, budget is " + LOGIN_BUDGET_MS + "ms");
+        }
+    }
+
+    private boolean verifyHash(String password, String[] parts) {
+        try {
+            int cost = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.decode(parts[2], Base64.NO_WRAP);
+            byte[] expected = Base64.decode(parts[3], Base64.NO_WRAP);
+            String hashAlgorithm = parts[0].equals("pbkdf2-sha256") ? "PBKDF2WithHmacSHA256" : "PBKDF2WithHmacSHA1";
+            // The stored length, not the current one, so older SHA-1 hashes keep verifying
+            byte[] actual = derive(password.toCharArray(), salt, cost, hashAlgorithm, expected.length * 8);
+            return constantTimeEquals(actual, expected);
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            Log.e(TAG, "Unreadable password hash: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private static boolean isHashPrefix(String value) {
+        return value.equals("pbkdf2-sha256") || value.equals("pbkdf2-sha1");
+    }
+
+    static int hashBits(String algorithm) {
+        return algorithm.equals("PBKDF2WithHmacSHA256") ? SHA256_HASH_BITS : SHA1_HASH_BITS;
+    }
+
+    static byte[] derive(char[] password, byte[] salt, int cost, String algorithm, int bits)
+            throws GeneralSecurityException {
+        KeySpec spec = new PBEKeySpec(password, salt, cost, bits);
+        try {
+            return SecretKeyFactory.getInstance(algorithm).generateSecret(spec).getEncoded();
+        } finally {
+            ((PBEKeySpec) spec).clearPassword();
+        }
+    }
+
+    // Compares every byte regardless of where the first difference is
+    static boolean constantTimeEquals(byte[] a, byte[] b) {
+        if (b.length == 0) {
+            return a.length == 0;
+        }
+        int diff = a.length ^ b.length;
+        for (int i = 0; i < a.length; i++) {
+            diff |= a[i] ^ b[i % b.length];
+        }
+        return diff == 0;
+    }
+
+    // Random bytes stand in for the derived hash: verifying still runs PBKDF2 once at the
+    // given cost, so building it costs nothing and no password can match it
+    private String newDummyHash(int cost) {
+        byte[] hash = new byte[hashBits(algorithm) / 8];
+        random.nextBytes(hash);
+        return prefix + "$" + cost + "$" + encode(newSalt()) + "$" + encode(hash);
+    }
+
+    private byte[] newSalt() {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.encodeToString(bytes, Base64.NO_WRAP);
+    }
+}
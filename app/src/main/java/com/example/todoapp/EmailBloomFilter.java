@@ -0,0 +1,74 @@
+package com.example.todoapp;
+
+/**
+ * Bloom filter over registered email addresses.
+ *
+ * {@link #mightContain(String)} returning false means the address is certainly not
+ * registered; true means it probably is and the database has the final word. The
+ * filter is sized for a 1% false positive rate at its expected capacity.
+ */
+public class EmailBloomFilter {
+    static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+    private final int capacity;
+    private int size;
+
+    public EmailBloomFilter(int expectedEntries) {
+        capacity = Math.max(MIN_CAPACITY, expectedEntries);
+        // m = -n ln p / (ln 2)^2, k = m / n ln 2
+        long m = (long) Math.ceil(-capacity * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+        bitCount = (int) Math.min(Integer.MAX_VALUE - 63, m);
+        bits = new long[(bitCount + 63) / 64];
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+    }
+
+    public synchronized void add(String email) {
+        long hash = hash(email);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+        size++;
+    }
+
+    public synchronized boolean mightContain(String email) {
+        long hash = hash(email);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Past capacity the false positive rate climbs, the owner should rebuild with more room
+    public synchronized boolean isOverCapacity() {
+        return size > capacity;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars with a final mix, split into two 32-bit hashes
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
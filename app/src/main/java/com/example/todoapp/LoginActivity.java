@@ -14,17 +14,18 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.textfield.TextInputEditText;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 public class LoginActivity extends AppCompatActivity {
 
     private TextInputEditText emailEditText, passwordEditText;
     private Button loginButton;
     private TextView registerTextView;
-    private TaskDatabase database;
-    private UserDao userDao;
+    private UserRepository userRepository;
     private SessionManager sessionManager;
-    private Executor executor = Executors.newSingleThreadExecutor();
+    // Verifying a password is slow on purpose, so logins run on their own thread
+    private Executor executor = AppExecutors.getInstance().credentials();
+    private Credentials credentials;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -32,9 +33,9 @@ public class LoginActivity extends AppCompatActivity {
         setContentView(R.layout.activity_login);
 
         try {
-            // Initialize database
-            database = TaskDatabase.getInstance(this);
-            userDao = database.userDao();
+            // Users are read and written through the cache
+            userRepository = UserRepository.getInstance(this);
+            credentials = Credentials.getInstance(this);
 
             // Initialize session manager
             sessionManager = new SessionManager(this);
@@ -94,42 +95,65 @@ public class LoginActivity extends AppCompatActivity {
             Toast.makeText(this, "Processing login...", Toast.LENGTH_SHORT).show();
             Log.d("LoginActivity", "Starting login process");
 
-            executor.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        final User user = userDao.getUserByEmail(email);
-
-                        runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                if (user != null && user.getPassword().equals(password)) {
-                                    Log.d("LoginActivity", "Login successful for: " + email);
-
-                                    // Create session
-                                    sessionManager.createLoginSession(user.getId(), user.getEmail(), user.getFullName());
-
-                                    // Start main activity
-                                    Intent intent = new Intent(LoginActivity.this, MainActivity.class);
-                                    intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                                    startActivity(intent);
-                                    finish();
-                                } else {
-                                    Toast.makeText(LoginActivity.this, "Invalid email or password", Toast.LENGTH_SHORT).show();
-                                }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            long start = QueryMetrics.now();
+                            final User user = userRepository.getUserByEmail(email);
+                            final boolean valid;
+                            if (user == null) {
+                                // Same cost as a wrong password, so timing doesn't reveal which emails exist
+                                credentials.verifyDummy(password);
+                                valid = false;
+                            } else {
+                                valid = credentials.verify(password, user.getPassword());
                             }
-                        });
-                    } catch (final Exception e) {
-                        Log.e("LoginActivity", "Error during login: " + e.getMessage(), e);
-                        runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                Toast.makeText(LoginActivity.this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                            credentials.checkBudget(start);
+
+                            runOnUiThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (valid) {
+                                        Log.d("LoginActivity", "Login successful for: " + email);
+
+                                        // Create session
+                                        sessionManager.createLoginSession(user.getId(), user.getEmail(), user.getFullName());
+
+                                        // Start main activity
+                                        Intent intent = new Intent(LoginActivity.this, MainActivity.class);
+                                        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+                                        startActivity(intent);
+                                        finish();
+                                    } else {
+                                        Toast.makeText(LoginActivity.this, "Invalid email or password", Toast.LENGTH_SHORT).show();
+                                    }
+                                }
+                            });
+
+                            // Upgrade plaintext and weaker hashes once the user is on their way
+                            if (valid && credentials.needsRehash(user.getPassword())) {
+                                user.setPassword(credentials.hash(password));
+                                userRepository.update(user);
+                                Log.d("LoginActivity", "Password hash upgraded for user " + user.getId());
                             }
-                        });
+                        } catch (final Exception e) {
+                            Log.e("LoginActivity", "Error during login: " + e.getMessage(), e);
+                            runOnUiThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Toast.makeText(LoginActivity.this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                                }
+                            });
+                        }
                     }
-                }
-            });
+                });
+            } catch (RejectedExecutionException e) {
+                // A few hashes are already queued, another tap would only wait behind them
+                Log.w("LoginActivity", "Credentials thread busy: " + e.getMessage());
+                Toast.makeText(this, "Busy, please try again", Toast.LENGTH_SHORT).show();
+            }
         } catch (Exception e) {
             Log.e("LoginActivity", "Error in login method: " + e.getMessage(), e);
             Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
@@ -2,6 +2,7 @@ package com.example.todoapp;
 
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -9,30 +10,69 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.EditText;
+import android.widget.ProgressBar;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultCallback;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.PagedList;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
-import java.util.ArrayList;
-import java.util.List;
-
-public class MainActivity extends AppCompatActivity implements TaskAdapter.OnTaskActionListener {
+public class MainActivity extends AppCompatActivity implements TaskAdapter.OnTaskActionListener,
+        SessionManager.SessionListener {
 
     private TaskViewModel taskViewModel;
     private TaskAdapter taskAdapter;
     private SessionManager sessionManager;
     private TextView welcomeTextView;
+    private ProgressBar importProgressBar;
+    private TextView importStatusTextView;
+
+    // The chosen file is streamed by TaskImporter, importing it again resumes an interrupted run
+    private final ActivityResultLauncher<String[]> importFilePicker = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), new ActivityResultCallback<Uri>() {
+                @Override
+                public void onActivityResult(Uri uri) {
+                    if (uri == null) {
+                        return;
+                    }
+                    if (!taskViewModel.importTasks(uri)) {
+                        Toast.makeText(MainActivity.this, "An import is already running", Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
+
+    private final ActivityResultLauncher<String> backupFilePicker = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(), new ActivityResultCallback<Uri>() {
+                @Override
+                public void onActivityResult(Uri uri) {
+                    if (uri != null) {
+                        new TaskBackup(MainActivity.this).exportTo(uri, true, backupCallback("Backup saved"));
+                    }
+                }
+            });
+
+    private final ActivityResultLauncher<String[]> restoreFilePicker = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), new ActivityResultCallback<Uri>() {
+                @Override
+                public void onActivityResult(Uri uri) {
+                    if (uri != null) {
+                        confirmRestore(uri);
+                    }
+                }
+            });
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -44,8 +84,11 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.OnTas
             // Initialize session manager
             sessionManager = new SessionManager(this);
 
+            // One snapshot read, no preference lookups
+            Session session = sessionManager.getSession();
+
             // Check if user is logged in
-            if (!sessionManager.isLoggedIn()) {
+            if (!session.isLoggedIn()) {
                 startActivity(new Intent(this, LoginActivity.class));
                 finish();
                 return;
@@ -63,17 +106,17 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.OnTas
             }
 
             // Debug logging for session info
-            String userName = sessionManager.getUserFullName();
+            String userName = session.getFullName();
             Log.d("MainActivity", "User full name from session: " + (userName != null ? userName : "null"));
-            Log.d("MainActivity", "User ID from session: " + sessionManager.getUserId());
+            Log.d("MainActivity", "User ID from session: " + session.getUserId());
 
             // Welcome message with user's name
             welcomeTextView = findViewById(R.id.welcomeTextView);
             if (welcomeTextView != null) {
-                String welcomeText = "Welcome back, " + sessionManager.getUserFullName();
-                welcomeTextView.setText(welcomeText);
+                showWelcome(session);
                 welcomeTextView.setVisibility(View.VISIBLE);
-                Log.d("MainActivity", "Welcome message set: " + welcomeText);
+                // Keep the name current after profile edits
+                SessionManager.addSessionListener(this);
             } else {
                 Log.e("MainActivity", "welcomeTextView not found in layout");
             }
@@ -83,20 +126,41 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.OnTas
             if (tasksRecyclerView != null) {
                 tasksRecyclerView.setLayoutManager(new LinearLayoutManager(this));
 
-                // Initialize adapter with empty list
-                taskAdapter = new TaskAdapter(this, new ArrayList<>());
+                // Initialize adapter, pages are submitted as they load
+                taskAdapter = new TaskAdapter(this);
                 tasksRecyclerView.setAdapter(taskAdapter);
 
                 // Initialize ViewModel
                 taskViewModel = new ViewModelProvider(this).get(TaskViewModel.class);
 
                 // Observe the tasks from database
-                taskViewModel.getAllTasks().observe(this, new Observer<List<Task>>() {
+                taskViewModel.getTasks().observe(this, new Observer<PagedList<TaskSummary>>() {
                     @Override
-                    public void onChanged(List<Task> tasks) {
+                    public void onChanged(PagedList<TaskSummary> tasks) {
+                        StartupTrace.mark(StartupTrace.FIRST_EMISSION);
                         // Update RecyclerView when data changes
-                        taskAdapter.setTasks(tasks);
-                        Log.d("MainActivity", "Task list updated, count: " + tasks.size());
+                        taskAdapter.submitList(tasks);
+                        Log.d("MainActivity", "Task page list updated, loaded: " + tasks.size());
+                    }
+                });
+
+                // Header counts come from one aggregate query instead of walking the list
+                final TextView statsTextView = findViewById(R.id.statsTextView);
+                if (statsTextView != null) {
+                    taskViewModel.getTaskStats().observe(this, new Observer<TaskStats>() {
+                        @Override
+                        public void onChanged(TaskStats stats) {
+                            statsTextView.setText(formatStats(stats));
+                        }
+                    });
+                }
+
+                importProgressBar = findViewById(R.id.importProgressBar);
+                importStatusTextView = findViewById(R.id.importStatusTextView);
+                taskViewModel.getImportProgress().observe(this, new Observer<TaskImporter.Progress>() {
+                    @Override
+                    public void onChanged(TaskImporter.Progress progress) {
+                        showImportProgress(progress);
                     }
                 });
 
@@ -125,9 +189,38 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.OnTas
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        SessionManager.removeSessionListener(this);
+        super.onDestroy();
+    }
+
+    @Override
+    public void onSessionChanged(Session session) {
+        if (!session.isLoggedIn()) {
+            // Logged out elsewhere, e.g. a restored backup without this account
+            if (!isFinishing()) {
+                startActivity(new Intent(this, LoginActivity.class));
+                finish();
+            }
+        } else if (welcomeTextView != null) {
+            showWelcome(session);
+        }
+    }
+
+    private void showWelcome(Session session) {
+        String welcomeText = "Welcome back, " + session.getFullName();
+        welcomeTextView.setText(welcomeText);
+        Log.d("MainActivity", "Welcome message set: " + welcomeText);
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        MenuItem hideCompletedItem = menu.findItem(R.id.action_hide_completed);
+        if (hideCompletedItem != null && taskViewModel != null) {
+            hideCompletedItem.setChecked(!taskViewModel.getTaskQuery().isShowCompleted());
+        }
         // Add logout option
         menu.add(Menu.NONE, 101, Menu.NONE, "Logout");
         return true;
@@ -138,17 +231,31 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.OnTas
         int id = item.getItemId();
 
         if (id == R.id.action_sort_priority) {
-            // Now using database for sorting
-            taskViewModel.getAllTasks().observe(this, tasks -> taskAdapter.setTasks(tasks));
+            // The view model switches the single live query
+            taskViewModel.setSortOrder(TaskQuery.SortOrder.PRIORITY);
             return true;
         } else if (id == R.id.action_sort_alphabetical) {
-            // Now using database for sorting
-            taskViewModel.getAllTasksAlphabetically().observe(this, tasks -> taskAdapter.setTasks(tasks));
+            taskViewModel.setSortOrder(TaskQuery.SortOrder.ALPHABETICAL);
+            return true;
+        } else if (id == R.id.action_hide_completed) {
+            boolean hideCompleted = !item.isChecked();
+            item.setChecked(hideCompleted);
+            taskViewModel.setShowCompleted(!hideCompleted);
             return true;
         } else if (id == R.id.action_clear_completed) {
             // Now using database for deleting
             taskViewModel.deleteCompletedTasks();
             return true;
+        } else if (id == R.id.action_import) {
+            importFilePicker.launch(new String[]{"application/json", "text/csv",
+                    "text/comma-separated-values", "text/plain"});
+            return true;
+        } else if (id == R.id.action_backup) {
+            backupFilePicker.launch("todo-backup.tdbk");
+            return true;
+        } else if (id == R.id.action_restore) {
+            restoreFilePicker.launch(new String[]{"*/*"});
+            return true;
         } else if (id == R.id.action_profile) {
             startActivity(new Intent(this, ProfileActivity.class));
             return true;
@@ -162,6 +269,78 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.OnTas
         return super.onOptionsItemSelected(item);
     }
 
+    private static String formatStats(TaskStats stats) {
+        if (stats == null || stats.getTotal() == 0) {
+            return "No tasks yet";
+        }
+        return stats.getPending() + " pending • " + stats.getCompleted() + " completed ("
+                + stats.getCompletionPercent() + "%)\n"
+                + stats.getHighCount() + " high • " + stats.getMediumCount() + " medium • "
+                + stats.getLowCount() + " low";
+    }
+
+    // Restore replaces every task, comment and user, so ask first
+    private void confirmRestore(final Uri uri) {
+        new AlertDialog.Builder(this)
+                .setTitle("Restore Backup")
+                .setMessage("This replaces all current tasks, comments and users with the backup.")
+                .setPositiveButton("Restore", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        new TaskBackup(MainActivity.this).restoreFrom(uri, backupCallback("Backup restored"));
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private TaskBackup.Callback backupCallback(final String message) {
+        return new TaskBackup.Callback() {
+            @Override
+            public void onBackupComplete(int users, int tasks, int comments) {
+                Toast.makeText(MainActivity.this, message + ": " + tasks + " tasks, " + comments
+                        + " comments, " + users + " users", Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onBackupFailed(Exception e) {
+                Toast.makeText(MainActivity.this, "Backup error: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        };
+    }
+
+    private void showImportProgress(TaskImporter.Progress progress) {
+        if (importProgressBar == null || importStatusTextView == null || progress == null) {
+            return;
+        }
+        String counts = progress.getTasksImported() + " tasks, " + progress.getCommentsImported()
+                + " comments imported"
+                + (progress.getRowsSkipped() > 0 ? ", " + progress.getRowsSkipped() + " skipped" : "");
+        importStatusTextView.setVisibility(View.VISIBLE);
+        switch (progress.getState()) {
+            case RUNNING:
+                importProgressBar.setVisibility(View.VISIBLE);
+                importProgressBar.setIndeterminate(progress.getPercent() < 0);
+                importProgressBar.setProgress(Math.max(0, progress.getPercent()));
+                importStatusTextView.setText("Importing: " + counts);
+                return;
+            case DONE:
+                importStatusTextView.setText("Import finished: " + counts);
+                break;
+            case CANCELLED:
+                importStatusTextView.setText("Import paused: " + counts + ". Import the file again to continue.");
+                break;
+            case FAILED:
+                importStatusTextView.setText("Import stopped: " + counts + ". Import the file again to continue.");
+                break;
+        }
+        importProgressBar.setVisibility(View.GONE);
+        if (!progress.getErrors().isEmpty()) {
+            Log.w("MainActivity", "Import problems: " + progress.getErrors());
+            Toast.makeText(this, progress.getErrors().get(0), Toast.LENGTH_LONG).show();
+        }
+    }
+
     private void showAddTaskDialog() {
         try {
             AlertDialog.Builder builder = new AlertDialog.Builder(this);
@@ -216,10 +395,10 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.OnTas
 
     // Implement OnTaskActionListener
     @Override
-    public void onDeleteTask(Task task) {
+    public void onDeleteTask(TaskSummary task) {
         try {
             // Delete from database
-            taskViewModel.delete(task);
+            taskViewModel.delete(task.getId());
             Toast.makeText(this, "Task deleted from database", Toast.LENGTH_SHORT).show();
         } catch (Exception e) {
             Log.e("MainActivity", "Error deleting task: " + e.getMessage(), e);
@@ -227,12 +406,11 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.OnTas
         }
     }
 
-    // Implement the new method for updating tasks
     @Override
-    public void updateTask(Task task) {
+    public void onTaskCompletedChanged(TaskSummary task, boolean completed) {
         try {
-            taskViewModel.update(task);
-            Log.d("MainActivity", "Task updated: " + task.getId() + ", Completed: " + task.isCompleted());
+            taskViewModel.setCompleted(task.getId(), completed);
+            Log.d("MainActivity", "Task updated: " + task.getId() + ", Completed: " + completed);
         } catch (Exception e) {
             Log.e("MainActivity", "Error updating task: " + e.getMessage(), e);
             Toast.makeText(this, "Error updating task: " + e.getMessage(), Toast.LENGTH_SHORT).show();
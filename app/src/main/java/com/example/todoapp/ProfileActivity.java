@@ -16,17 +16,16 @@ import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 public class ProfileActivity extends AppCompatActivity {
 
     private TextInputEditText fullNameEditText, emailEditText, currentPasswordEditText, newPasswordEditText;
     private TextInputLayout currentPasswordLayout, newPasswordLayout;
     private Button saveChangesButton, changePasswordButton;
-    private TaskDatabase database;
-    private UserDao userDao;
+    private UserRepository userRepository;
     private SessionManager sessionManager;
-    private Executor executor = Executors.newSingleThreadExecutor();
+    private Executor executor = AppExecutors.getInstance().diskIO();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -42,9 +41,8 @@ public class ProfileActivity extends AppCompatActivity {
                 getSupportActionBar().setDisplayHomeAsUpEnabled(true);
             }
 
-            // Initialize database
-            database = TaskDatabase.getInstance(this);
-            userDao = database.userDao();
+            // Users are read and written through the cache
+            userRepository = UserRepository.getInstance(this);
 
             // Initialize session manager
             sessionManager = new SessionManager(this);
@@ -102,7 +100,7 @@ public class ProfileActivity extends AppCompatActivity {
             @Override
             public void run() {
                 try {
-                    final User user = userDao.getUserById(sessionManager.getUserId());
+                    final User user = userRepository.getUserById(sessionManager.getUserId());
                     if (user != null) {
                         runOnUiThread(new Runnable() {
                             @Override
@@ -140,51 +138,62 @@ public class ProfileActivity extends AppCompatActivity {
             return;
         }
 
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    final User existingUser = userDao.getUserByEmail(email);
-                    final int userId = sessionManager.getUserId();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final User existingUser = userRepository.getUserByEmail(email);
+                        final int userId = sessionManager.getUserId();
 
-                    // Make sure we don't create a duplicate email (unless it's the user's current email)
-                    if (existingUser != null && existingUser.getId() != userId) {
-                        runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                emailEditText.setError("Email already in use by another account");
-                            }
-                        });
-                        return;
-                    }
+                        // Make sure we don't create a duplicate email (unless it's the user's current email)
+                        if (existingUser != null && existingUser.getId() != userId) {
+                            runOnUiThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    emailEditText.setError("Email already in use by another account");
+                                }
+                            });
+                            return;
+                        }
 
-                    final User user = userDao.getUserById(userId);
-                    if (user != null) {
-                        user.setFullName(fullName);
-                        user.setEmail(email);
-                        userDao.update(user);
+                        final User user = userRepository.getUserById(userId);
+                        if (user != null) {
+                            boolean renamed = !fullName.equals(user.getFullName());
+                            user.setFullName(fullName);
+                            user.setEmail(email);
+                            userRepository.update(user);
+                            // Existing comments show the old name until this catches up
+                            if (renamed) {
+                                CommentRenamePropagator.getInstance(ProfileActivity.this).rename(userId, fullName);
+                            }
 
-                        // Update session data
-                        sessionManager.updateUserDetails(email, fullName);
+                            // Update session data
+                            sessionManager.updateUserDetails(email, fullName);
 
+                            runOnUiThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Toast.makeText(ProfileActivity.this, "Profile updated successfully", Toast.LENGTH_SHORT).show();
+                                }
+                            });
+                        }
+                    } catch (final Exception e) {
+                        Log.e("ProfileActivity", "Error saving profile: " + e.getMessage(), e);
                         runOnUiThread(new Runnable() {
                             @Override
                             public void run() {
-                                Toast.makeText(ProfileActivity.this, "Profile updated successfully", Toast.LENGTH_SHORT).show();
+                                Toast.makeText(ProfileActivity.this, "Error updating profile: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                             }
                         });
                     }
-                } catch (final Exception e) {
-                    Log.e("ProfileActivity", "Error saving profile: " + e.getMessage(), e);
-                    runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            Toast.makeText(ProfileActivity.this, "Error updating profile: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        }
-                    });
                 }
-            }
-        });
+            });
+        } catch (RejectedExecutionException e) {
+            // The IO pool is full, e.g. during an import; nothing was saved yet
+            Log.w("ProfileActivity", "IO pool busy: " + e.getMessage());
+            Toast.makeText(this, "Busy, please try again", Toast.LENGTH_SHORT).show();
+        }
     }
 
     private void changePassword() {
@@ -207,51 +216,59 @@ public class ProfileActivity extends AppCompatActivity {
             return;
         }
 
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    final User user = userDao.getUserById(sessionManager.getUserId());
+        // Verifying and hashing are slow on purpose, keep them off the database pool
+        try {
+            AppExecutors.getInstance().credentials().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final User user = userRepository.getUserById(sessionManager.getUserId());
+
+                        if (user != null) {
+                            Credentials credentials = Credentials.getInstance(ProfileActivity.this);
+                            if (!credentials.verify(currentPassword, user.getPassword())) {
+                                runOnUiThread(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        currentPasswordEditText.setError("Current password is incorrect");
+                                    }
+                                });
+                                return;
+                            }
+
+                            user.setPassword(credentials.hash(newPassword));
+                            userRepository.update(user);
 
-                    if (user != null) {
-                        if (!user.getPassword().equals(currentPassword)) {
                             runOnUiThread(new Runnable() {
                                 @Override
                                 public void run() {
-                                    currentPasswordEditText.setError("Current password is incorrect");
+                                    Toast.makeText(ProfileActivity.this, "Password changed successfully", Toast.LENGTH_SHORT).show();
+                                    // Hide password fields and reset button text
+                                    currentPasswordLayout.setVisibility(View.GONE);
+                                    newPasswordLayout.setVisibility(View.GONE);
+                                    changePasswordButton.setText("Change Password");
+                                    // Clear password fields
+                                    currentPasswordEditText.setText("");
+                                    newPasswordEditText.setText("");
                                 }
                             });
-                            return;
                         }
-
-                        user.setPassword(newPassword);
-                        userDao.update(user);
-
+                    } catch (final Exception e) {
+                        Log.e("ProfileActivity", "Error changing password: " + e.getMessage(), e);
                         runOnUiThread(new Runnable() {
                             @Override
                             public void run() {
-                                Toast.makeText(ProfileActivity.this, "Password changed successfully", Toast.LENGTH_SHORT).show();
-                                // Hide password fields and reset button text
-                                currentPasswordLayout.setVisibility(View.GONE);
-                                newPasswordLayout.setVisibility(View.GONE);
-                                changePasswordButton.setText("Change Password");
-                                // Clear password fields
-                                currentPasswordEditText.setText("");
-                                newPasswordEditText.setText("");
+                                Toast.makeText(ProfileActivity.this, "Error changing password: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                             }
                         });
                     }
-                } catch (final Exception e) {
-                    Log.e("ProfileActivity", "Error changing password: " + e.getMessage(), e);
-                    runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            Toast.makeText(ProfileActivity.this, "Error changing password: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        }
-                    });
                 }
-            }
-        });
+            });
+        } catch (RejectedExecutionException e) {
+            // A few hashes are already queued, another tap would only wait behind them
+            Log.w("ProfileActivity", "Credentials thread busy: " + e.getMessage());
+            Toast.makeText(this, "Busy, please try again", Toast.LENGTH_SHORT).show();
+        }
     }
 
     @Override
@@ -0,0 +1,173 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latency metrics for DAO calls.
+ *
+ * Call sites time their DAO calls and report them with {@link #record}, which keeps
+ * a histogram per query name (count, p50/p95/p99 in microseconds, rows returned), since
+ * most indexed page queries finish well under a millisecond. Calls slower than
+ * the threshold also go to a rolling slow-query log, together with the last SQL Room
+ * ran on that thread. Bound arguments are never stored, only their count.
+ * {@link #dump(Context)} writes everything to query_metrics.txt in the files directory.
+ * The SQL capture is only installed on debug builds, see TaskDatabase.
+ */
+public class QueryMetrics implements RoomDatabase.QueryCallback {
+    private static final String TAG = "QueryMetrics";
+
+    static final long DEFAULT_SLOW_QUERY_THRESHOLD_MS = 50;
+    private static final int SAMPLES_PER_QUERY = 512;
+    private static final int SLOW_LOG_SIZE = 100;
+
+    private static QueryMetrics instance;
+
+    private final Map<String, QueryStats> statsByName = new TreeMap<>();
+    private final ArrayDeque<String> slowQueries = new ArrayDeque<>();
+    private final ThreadLocal<String> lastSql = new ThreadLocal<>();
+    private volatile long slowQueryThresholdMs = DEFAULT_SLOW_QUERY_THRESHOLD_MS;
+
+    public static synchronized QueryMetrics getInstance() {
+        if (instance == null) {
+            instance = new QueryMetrics();
+        }
+        return instance;
+    }
+
+    public static long now() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    public void setSlowQueryThresholdMs(long thresholdMs) {
+        slowQueryThresholdMs = thresholdMs;
+    }
+
+    // Room reports every statement here before running it, on the calling thread
+    @Override
+    public void onQuery(@NonNull String sqlQuery, @NonNull List<Object> bindArgs) {
+        lastSql.set(bindArgs.isEmpty() ? sqlQuery : sqlQuery + " [" + bindArgs.size() + " args]");
+    }
+
+    /**
+     * Records one DAO call that started at {@code startNanos} (from {@link #now()}).
+     */
+    public void record(String name, long startNanos, int rows) {
+        long durationNanos = now() - startNanos;
+        long durationMs = durationNanos / 1_000_000;
+        synchronized (this) {
+            QueryStats stats = statsByName.get(name);
+            if (stats == null) {
+                stats = new QueryStats();
+                statsByName.put(name, stats);
+            }
+            stats.add(durationNanos, rows);
+
+            if (durationMs >= slowQueryThresholdMs) {
+                String sql = lastSql.get();
+                String entry = timestamp() + " " + name + " " + durationMs + "ms rows=" + rows
+                        + (sql != null ? " sql=" + sql : "");
+                if (slowQueries.size() == SLOW_LOG_SIZE) {
+                    slowQueries.removeFirst();
+                }
+                slowQueries.addLast(entry);
+                Log.w(TAG, "Slow query: " + entry);
+            }
+        }
+    }
+
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder();
+        report.append("query count p50us p95us p99us maxus avgRows\n");
+        for (Map.Entry<String, QueryStats> entry : statsByName.entrySet()) {
+            report.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        report.append("\nslow queries (>= ").append(slowQueryThresholdMs).append("ms)\n");
+        for (String slowQuery : slowQueries) {
+            report.append(slowQuery).append('\n');
+        }
+        return report.toString();
+    }
+
+    public File dump(Context context) {
+        File file = new File(context.getFilesDir(), "query_metrics.txt");
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(new FileWriter(file));
+            writer.print(report());
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing query metrics: " + e.getMessage(), e);
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        return file;
+    }
+
+    // How many times the named query has run since the last reset
+    public synchronized long getCount(String name) {
+        QueryStats stats = statsByName.get(name);
+        return stats != null ? stats.count : 0;
+    }
+
+    public synchronized void reset() {
+        statsByName.clear();
+        slowQueries.clear();
+    }
+
+    private static String timestamp() {
+        return new SimpleDateFormat("HH:mm:ss.SSS", Locale.US).format(new Date());
+    }
+
+    // Keeps the most recent samples for percentiles plus running totals
+    private static class QueryStats {
+        private final long[] samples = new long[SAMPLES_PER_QUERY];
+        private int sampleCount;
+        private long count;
+        private long totalRows;
+        private long maxNanos;
+
+        void add(long durationNanos, int rows) {
+            samples[(int) (count % SAMPLES_PER_QUERY)] = durationNanos;
+            sampleCount = Math.min(sampleCount + 1, SAMPLES_PER_QUERY);
+            count++;
+            totalRows += rows;
+            maxNanos = Math.max(maxNanos, durationNanos);
+        }
+
+        @Override
+        public String toString() {
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            return count + " " + percentileMicros(sorted, 50) + " " + percentileMicros(sorted, 95) + " "
+                    + percentileMicros(sorted, 99) + " " + maxNanos / 1_000 + " "
+                    + (count == 0 ? 0 : totalRows / count);
+        }
+
+        private static long percentileMicros(long[] sorted, int percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000;
+        }
+    }
+}
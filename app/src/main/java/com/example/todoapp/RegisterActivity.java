@@ -1,8 +1,14 @@
 package com.example.todoapp;
 
 import android.content.Intent;
+import android.database.sqlite.SQLiteConstraintException;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.util.Patterns;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -14,16 +20,28 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.textfield.TextInputEditText;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RegisterActivity extends AppCompatActivity {
 
     private TextInputEditText fullNameEditText, emailEditText, passwordEditText;
     private Button registerButton;
     private TextView loginTextView;
-    private TaskDatabase database;
-    private UserDao userDao;
-    private Executor executor = Executors.newSingleThreadExecutor();
+    private UserRepository userRepository;
+    private Executor executor = AppExecutors.getInstance().diskIO();
+
+    // Wait for a pause in typing before checking the email
+    private static final long EMAIL_CHECK_DELAY_MS = 300;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Bumped on every edit; lookups started for an older value are skipped or ignored
+    private final AtomicInteger emailCheckGeneration = new AtomicInteger();
+    private final Runnable emailCheck = new Runnable() {
+        @Override
+        public void run() {
+            checkEmailAvailability();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -31,9 +49,8 @@ public class RegisterActivity extends AppCompatActivity {
         setContentView(R.layout.activity_register);
 
         try {
-            // Initialize database
-            database = TaskDatabase.getInstance(this);
-            userDao = database.userDao();
+            // Users are read and written through the cache
+            userRepository = UserRepository.getInstance(this);
 
             // Initialize views
             fullNameEditText = findViewById(R.id.fullNameEditText);
@@ -50,6 +67,26 @@ public class RegisterActivity extends AppCompatActivity {
                 }
             });
 
+            // Tell the user an email is taken while they type, not after submitting
+            emailEditText.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    emailCheckGeneration.incrementAndGet();
+                    mainHandler.removeCallbacks(emailCheck);
+                    if (Patterns.EMAIL_ADDRESS.matcher(s.toString().trim()).matches()) {
+                        mainHandler.postDelayed(emailCheck, EMAIL_CHECK_DELAY_MS);
+                    }
+                }
+            });
+
             // Login text click listener
             loginTextView.setOnClickListener(new View.OnClickListener() {
                 @Override
@@ -64,6 +101,46 @@ public class RegisterActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        mainHandler.removeCallbacks(emailCheck);
+        emailCheckGeneration.incrementAndGet();
+        super.onDestroy();
+    }
+
+    private void checkEmailAvailability() {
+        final String email = emailEditText.getText().toString().trim();
+        final int generation = emailCheckGeneration.get();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // The user kept typing while this waited in the queue
+                    if (generation != emailCheckGeneration.get()) {
+                        return;
+                    }
+                    try {
+                        final boolean available = userRepository.isEmailAvailable(email);
+                        runOnUiThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (generation == emailCheckGeneration.get() && !available) {
+                                    emailEditText.setError("Email already registered");
+                                }
+                            }
+                        });
+                    } catch (Exception e) {
+                        // Submit checks again, so a failed live check only costs the early hint
+                        Log.e("RegisterActivity", "Error checking email: " + e.getMessage(), e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The IO pool is full, e.g. during an import; submit still checks the email
+            Log.w("RegisterActivity", "Skipped email check: " + e.getMessage());
+        }
+    }
+
     private void register() {
         try {
             final String fullName = fullNameEditText.getText().toString().trim();
@@ -94,54 +171,73 @@ public class RegisterActivity extends AppCompatActivity {
             // Show processing message
             Toast.makeText(RegisterActivity.this, "Processing registration...", Toast.LENGTH_SHORT).show();
 
-            // Create user in background using Executor instead of AsyncTask
-            executor.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        // Check if email already exists
-                        final User existingUser = userDao.getUserByEmail(email);
+            // Create user in background; hashing the password is slow, so it has its own thread
+            try {
+                AppExecutors.getInstance().credentials().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            // Check if email already exists
+                            final User existingUser = userRepository.getUserByEmail(email);
+
+                            if (existingUser != null) {
+                                runOnUiThread(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        Toast.makeText(RegisterActivity.this, "Email already registered", Toast.LENGTH_SHORT).show();
+                                    }
+                                });
+                                return;
+                            }
+
+                            // Create new user
+                            User newUser = new User(email,
+                                    Credentials.getInstance(RegisterActivity.this).hash(password), fullName);
+                            final long userId;
+                            try {
+                                userId = userRepository.insert(newUser);
+                            } catch (SQLiteConstraintException e) {
+                                // Registered in the meantime, the unique email index caught it
+                                runOnUiThread(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        Toast.makeText(RegisterActivity.this, "Email already registered", Toast.LENGTH_SHORT).show();
+                                    }
+                                });
+                                return;
+                            }
 
-                        if (existingUser != null) {
                             runOnUiThread(new Runnable() {
                                 @Override
                                 public void run() {
-                                    Toast.makeText(RegisterActivity.this, "Email already registered", Toast.LENGTH_SHORT).show();
+                                    if (userId > 0) {
+                                        Toast.makeText(RegisterActivity.this, "Registration successful! Please login.", Toast.LENGTH_SHORT).show();
+
+                                        // Explicitly navigate to Login screen
+                                        Intent intent = new Intent(RegisterActivity.this, LoginActivity.class);
+                                        startActivity(intent);
+                                        finish();
+                                    } else {
+                                        Toast.makeText(RegisterActivity.this, "Registration failed", Toast.LENGTH_SHORT).show();
+                                    }
                                 }
                             });
-                            return;
-                        }
-
-                        // Create new user
-                        User newUser = new User(email, password, fullName);
-                        final long userId = userDao.insert(newUser);
-
-                        runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                if (userId > 0) {
-                                    Toast.makeText(RegisterActivity.this, "Registration successful! Please login.", Toast.LENGTH_SHORT).show();
-
-                                    // Explicitly navigate to Login screen
-                                    Intent intent = new Intent(RegisterActivity.this, LoginActivity.class);
-                                    startActivity(intent);
-                                    finish();
-                                } else {
-                                    Toast.makeText(RegisterActivity.this, "Registration failed", Toast.LENGTH_SHORT).show();
+                        } catch (final Exception e) {
+                            Log.e("RegisterActivity", "Error registering user: " + e.getMessage(), e);
+                            runOnUiThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Toast.makeText(RegisterActivity.this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
                                 }
-                            }
-                        });
-                    } catch (final Exception e) {
-                        Log.e("RegisterActivity", "Error registering user: " + e.getMessage(), e);
-                        runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                Toast.makeText(RegisterActivity.this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                            }
-                        });
+                            });
+                        }
                     }
-                }
-            });
+                });
+            } catch (RejectedExecutionException e) {
+                // A few hashes are already queued, another tap would only wait behind them
+                Log.w("RegisterActivity", "Credentials thread busy: " + e.getMessage());
+                Toast.makeText(RegisterActivity.this, "Busy, please try again", Toast.LENGTH_SHORT).show();
+            }
         } catch (Exception e) {
             Log.e("RegisterActivity", "Error in register method: " + e.getMessage(), e);
             Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
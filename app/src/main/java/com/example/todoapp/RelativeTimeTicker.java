@@ -0,0 +1,72 @@
+package com.example.todoapp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One main-thread tick per minute for every list that shows relative times.
+ *
+ * Ticks land just after each minute boundary and only run while someone is listening,
+ * so a screen without relative times costs nothing. Use from the main thread.
+ */
+public class RelativeTimeTicker {
+
+    public interface Listener {
+        void onMinuteTick(long now);
+    }
+
+    private static RelativeTimeTicker instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            // Index loop, listeners may unregister while being notified
+            for (int i = listeners.size() - 1; i >= 0; i--) {
+                if (i < listeners.size()) {
+                    listeners.get(i).onMinuteTick(now);
+                }
+            }
+            scheduleNext();
+        }
+    };
+
+    public static synchronized RelativeTimeTicker getInstance() {
+        if (instance == null) {
+            instance = new RelativeTimeTicker();
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        if (listeners.contains(listener)) {
+            return;
+        }
+        listeners.add(listener);
+        if (listeners.size() == 1) {
+            scheduleNext();
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            mainHandler.removeCallbacks(tick);
+        }
+    }
+
+    private void scheduleNext() {
+        mainHandler.removeCallbacks(tick);
+        if (listeners.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long delay = CommentTimeFormatter.MINUTE_MS - now % CommentTimeFormatter.MINUTE_MS;
+        mainHandler.postDelayed(tick, delay + 50);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.todoapp;
+
+/**
+ * Immutable snapshot of the logged-in user, swapped as a whole by SessionManager.
+ */
+public final class Session {
+    public static final Session LOGGED_OUT = new Session(false, -1, null, null);
+
+    private final boolean loggedIn;
+    private final int userId;
+    private final String email;
+    private final String fullName;
+
+    public Session(boolean loggedIn, int userId, String email, String fullName) {
+        this.loggedIn = loggedIn;
+        this.userId = userId;
+        this.email = email;
+        this.fullName = fullName;
+    }
+
+    public boolean isLoggedIn() {
+        return loggedIn;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public Session withUserDetails(String email, String fullName) {
+        return new Session(loggedIn, userId, email, fullName);
+    }
+}
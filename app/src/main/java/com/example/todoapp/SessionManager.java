@@ -3,6 +3,16 @@ package com.example.todoapp;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Process-wide session state.
+ *
+ * The preferences are read once into an immutable {@link Session}; getters read that
+ * snapshot without touching SharedPreferences. Login, logout and profile edits swap
+ * the snapshot atomically, persist it, and notify listeners on the main thread.
+ */
 public class SessionManager {
     private static final String PREF_NAME = "TodoAppSession";
     private static final String KEY_USER_ID = "userId";
@@ -10,48 +20,123 @@ public class SessionManager {
     private static final String KEY_FULL_NAME = "fullName";
     private static final String KEY_IS_LOGGED_IN = "isLoggedIn";
 
-    private SharedPreferences pref;
-    private SharedPreferences.Editor editor;
-    private Context context;
+    // Notified on the main thread whenever the session changes
+    public interface SessionListener {
+        void onSessionChanged(Session session);
+    }
+
+    private static final Object loadLock = new Object();
+    private static final AtomicReference<Session> snapshot = new AtomicReference<>();
+    private static final CopyOnWriteArrayList<SessionListener> listeners = new CopyOnWriteArrayList<>();
+    private static volatile SharedPreferences pref;
 
     public SessionManager(Context context) {
-        this.context = context;
-        pref = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        editor = pref.edit();
+        ensureLoaded(context);
+    }
+
+    // Reads the stored session on the IO pool so the first Activity doesn't pay for it
+    public static void preload(final Context context) {
+        final Context appContext = context.getApplicationContext();
+        AppExecutors.getInstance().diskIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                ensureLoaded(appContext);
+            }
+        });
+    }
+
+    private static void ensureLoaded(Context context) {
+        if (snapshot.get() != null) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (snapshot.get() != null) {
+                return;
+            }
+            SharedPreferences preferences = context.getApplicationContext()
+                    .getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+            pref = preferences;
+            snapshot.compareAndSet(null, new Session(
+                    preferences.getBoolean(KEY_IS_LOGGED_IN, false),
+                    preferences.getInt(KEY_USER_ID, -1),
+                    preferences.getString(KEY_EMAIL, null),
+                    preferences.getString(KEY_FULL_NAME, null)));
+        }
+    }
+
+    public Session getSession() {
+        return snapshot.get();
+    }
+
+    public static void addSessionListener(SessionListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public static void removeSessionListener(SessionListener listener) {
+        listeners.remove(listener);
     }
 
     public void createLoginSession(int userId, String email, String fullName) {
-        editor.putBoolean(KEY_IS_LOGGED_IN, true);
-        editor.putInt(KEY_USER_ID, userId);
-        editor.putString(KEY_EMAIL, email);
-        editor.putString(KEY_FULL_NAME, fullName);
-        editor.apply();
+        publish(new Session(true, userId, email, fullName));
+        pref.edit()
+                .putBoolean(KEY_IS_LOGGED_IN, true)
+                .putInt(KEY_USER_ID, userId)
+                .putString(KEY_EMAIL, email)
+                .putString(KEY_FULL_NAME, fullName)
+                .apply();
     }
 
     public boolean isLoggedIn() {
-        return pref.getBoolean(KEY_IS_LOGGED_IN, false);
+        return snapshot.get().isLoggedIn();
     }
 
     public void logoutUser() {
-        editor.clear();
-        editor.apply();
+        publish(Session.LOGGED_OUT);
+        pref.edit().clear().apply();
     }
 
     public int getUserId() {
-        return pref.getInt(KEY_USER_ID, -1);
+        return snapshot.get().getUserId();
     }
 
     public String getUserEmail() {
-        return pref.getString(KEY_EMAIL, null);
+        return snapshot.get().getEmail();
     }
 
     public String getUserFullName() {
-        return pref.getString(KEY_FULL_NAME, null);
+        return snapshot.get().getFullName();
     }
 
     public void updateUserDetails(String email, String fullName) {
-        editor.putString(KEY_EMAIL, email);
-        editor.putString(KEY_FULL_NAME, fullName);
-        editor.apply();
+        Session current;
+        Session updated;
+        do {
+            current = snapshot.get();
+            updated = current.withUserDetails(email, fullName);
+        } while (!snapshot.compareAndSet(current, updated));
+        notifyListeners(updated);
+        pref.edit()
+                .putString(KEY_EMAIL, email)
+                .putString(KEY_FULL_NAME, fullName)
+                .apply();
+    }
+
+    private static void publish(Session session) {
+        snapshot.set(session);
+        notifyListeners(session);
+    }
+
+    private static void notifyListeners(final Session session) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        AppExecutors.getInstance().mainThread().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (SessionListener listener : listeners) {
+                    listener.onSessionChanged(session);
+                }
+            }
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package com.example.todoapp;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cold-start milestones: process start, database open, first list emission and first bind.
+ *
+ * Each mark is logged under the "StartupTrace" tag with its offset from process start,
+ * and sections also show up in systrace. Marks are recorded once per process.
+ */
+public final class StartupTrace {
+    private static final String TAG = "StartupTrace";
+
+    public static final String PROCESS_START = "process_start";
+    public static final String DB_OPEN = "db_open";
+    public static final String FIRST_EMISSION = "first_emission";
+    public static final String FIRST_BIND = "first_bind";
+
+    private static final List<String> marks = new ArrayList<>();
+    private static boolean started;
+    private static long processStart;
+
+    private StartupTrace() {
+    }
+
+    public static synchronized void start() {
+        if (!started) {
+            started = true;
+            long now = SystemClock.elapsedRealtime();
+            // Before N the Application's onCreate is the earliest point we can see
+            processStart = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                    ? Process.getStartElapsedRealtime() : now;
+            record(PROCESS_START, now - processStart);
+        }
+    }
+
+    // Records a milestone the first time it is reached
+    public static synchronized void mark(String name) {
+        if (!started || hasMark(name)) {
+            return;
+        }
+        record(name, SystemClock.elapsedRealtime() - processStart);
+    }
+
+    public static void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    public static void endSection(String name) {
+        Trace.endSection();
+        mark(name);
+    }
+
+    public static synchronized List<String> getMarks() {
+        return Collections.unmodifiableList(new ArrayList<>(marks));
+    }
+
+    @VisibleForTesting
+    static synchronized void reset() {
+        marks.clear();
+        started = false;
+        processStart = 0;
+    }
+
+    private static boolean hasMark(String name) {
+        String prefix = name + "=";
+        for (String mark : marks) {
+            if (mark.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void record(String name, long offsetMs) {
+        String mark = name + "=" + offsetMs + "ms";
+        marks.add(mark);
+        Log.i(TAG, mark);
+    }
+}
@@ -1,9 +1,17 @@
 package com.example.todoapp;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "task_table")
+@Entity(tableName = "task_table",
+        indices = {
+                // Keyset paging indexes, see TaskKeysetDataSource
+                @Index(value = {"priority", "id"}),
+                @Index(value = {"title", "id"}),
+                // Covers the aggregate in TaskDao.getTaskStats and deleteCompletedTasks
+                @Index(value = {"isCompleted", "priority"})
+        })
 public class Task {
     @PrimaryKey(autoGenerate = true)
     private int id;
@@ -0,0 +1,44 @@
+package com.example.todoapp;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+/**
+ * Comment count and latest comment time per task, kept current by triggers on
+ * comment_table (see {@link TaskDatabase#createCommentActivityTriggers}).
+ *
+ * The counters live beside task_table instead of in it, so a new comment doesn't
+ * rewrite the task row and its full-text index entry. Task list queries join this
+ * table by primary key. Tasks without comments have no row.
+ */
+@Entity(tableName = "task_activity",
+        foreignKeys = @ForeignKey(entity = Task.class,
+                parentColumns = "id",
+                childColumns = "taskId",
+                onDelete = ForeignKey.CASCADE))
+public class TaskActivity {
+    @PrimaryKey
+    private int taskId;
+
+    private int commentCount;
+    private long lastCommentAt;
+
+    public TaskActivity(int taskId, int commentCount, long lastCommentAt) {
+        this.taskId = taskId;
+        this.commentCount = commentCount;
+        this.lastCommentAt = lastCommentAt;
+    }
+
+    public int getTaskId() {
+        return taskId;
+    }
+
+    public int getCommentCount() {
+        return commentCount;
+    }
+
+    public long getLastCommentAt() {
+        return lastCommentAt;
+    }
+}
@@ -2,8 +2,10 @@ package com.example.todoapp;
 
 import android.content.Context;
 import android.content.Intent;
+import android.content.res.ColorStateList;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -13,30 +15,109 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.core.content.ContextCompat;
+import androidx.paging.AsyncPagedListDiffer;
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
+public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder>
+        implements RelativeTimeTicker.Listener {
 
-public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder> {
+    // Diffs each new page list on a background thread and dispatches only the changed positions
+    private final AsyncPagedListDiffer<TaskSummary> differ = new AsyncPagedListDiffer<>(
+            new AdapterListUpdateCallback(this),
+            new AsyncDifferConfig.Builder<>(DIFF_CALLBACK)
+                    .setBackgroundThreadExecutor(AppExecutors.getInstance().cpu())
+                    .build());
+    private static final String STATUS_COMPLETED = "Completed";
+    private static final String STATUS_PENDING = "Pending";
+    // Cards on screen are likely to be opened next; wait for scrolling or list updates to settle
+    private static final long PREFETCH_DELAY_MS = 300;
+    private static final int MAX_PREFETCH_CARDS = 8;
 
-    private List<Task> taskList;
     private Context context;
+    private boolean firstBindTraced;
     private OnTaskActionListener listener;
+    private final CommentTimeFormatter timeFormatter = CommentTimeFormatter.getInstance();
+    private RecyclerView recyclerView;
+    private final TaskDetailCache detailCache;
+    private final Runnable prefetchVisible = new Runnable() {
+        @Override
+        public void run() {
+            prefetchVisibleTasks();
+        }
+    };
+    private final RecyclerView.OnScrollListener prefetchOnIdle = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+            if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                schedulePrefetch();
+            }
+        }
+    };
+    private final int[] priorityColors;
+    private final ColorStateList completedBackground;
+    private final ColorStateList pendingBackground;
+    private final ColorStateList completedTitleColor;
+    private final ColorStateList pendingTitleColor;
+    private final ColorStateList completedStatusColor;
+    private final ColorStateList pendingStatusColor;
 
     // Interface for task actions
     public interface OnTaskActionListener {
-        void onDeleteTask(Task task);
-        void updateTask(Task task);
+        void onDeleteTask(TaskSummary task);
+        void onTaskCompletedChanged(TaskSummary task, boolean completed);
     }
 
-    public TaskAdapter(Context context, List<Task> taskList) {
+    // Identity is the row id, content is every column the card shows
+    static final DiffUtil.ItemCallback<TaskSummary> DIFF_CALLBACK = new DiffUtil.ItemCallback<TaskSummary>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull TaskSummary oldItem, @NonNull TaskSummary newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull TaskSummary oldItem, @NonNull TaskSummary newItem) {
+            return oldItem.isCompleted() == newItem.isCompleted()
+                    && oldItem.getPriority() == newItem.getPriority()
+                    && oldItem.getCommentCount() == newItem.getCommentCount()
+                    && oldItem.getLastCommentAt() == newItem.getLastCommentAt()
+                    && TextUtils.equals(oldItem.getTitle(), newItem.getTitle());
+        }
+    };
+
+    public TaskAdapter(Context context) {
         this.context = context;
-        this.taskList = taskList;
 
         // Set up the listener if the context implements our interface
         if (context instanceof OnTaskActionListener) {
             this.listener = (OnTaskActionListener) context;
         }
+
+        // Resolved once here instead of parsing color strings on every bind
+        priorityColors = new int[]{
+                ContextCompat.getColor(context, R.color.priorityLow),
+                ContextCompat.getColor(context, R.color.priorityMedium),
+                ContextCompat.getColor(context, R.color.priorityHigh)
+        };
+        completedBackground = ColorStateList.valueOf(ContextCompat.getColor(context, R.color.taskCompletedBackground));
+        pendingBackground = ColorStateList.valueOf(Color.WHITE);
+        completedTitleColor = ColorStateList.valueOf(Color.GRAY);
+        pendingTitleColor = ColorStateList.valueOf(Color.BLACK);
+        completedStatusColor = ColorStateList.valueOf(ContextCompat.getColor(context, R.color.taskCompletedStatus));
+        pendingStatusColor = ColorStateList.valueOf(ContextCompat.getColor(context, R.color.taskPendingStatus));
+
+        detailCache = TaskDetailCache.getInstance(context);
+        // A new list means new cards on screen, or a write that emptied the cache
+        differ.addPagedListListener(new AsyncPagedListDiffer.PagedListListener<TaskSummary>() {
+            @Override
+            public void onCurrentListChanged(PagedList<TaskSummary> previousList, PagedList<TaskSummary> currentList) {
+                schedulePrefetch();
+            }
+        });
     }
 
     @NonNull
@@ -44,135 +125,240 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
     public TaskViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View itemView = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_task, parent, false);
-        return new TaskViewHolder(itemView);
+        return new TaskViewHolder(itemView, this);
     }
 
     @Override
     public void onBindViewHolder(@NonNull TaskViewHolder holder, int position) {
-        Task task = taskList.get(position);
-        holder.taskTextView.setText(task.getTitle());
-        holder.priorityTextView.setText(task.getPriorityText());
+        // getItem also triggers loading of the next page near the end
+        TaskSummary task = differ.getItem(position);
+        if (!firstBindTraced) {
+            firstBindTraced = true;
+            StartupTrace.mark(StartupTrace.FIRST_BIND);
+        }
+        // Titles and labels are existing Strings, colors are resolved in the constructor.
+        // A re-bind of an unchanged row leaves the views alone.
+        TaskSummary previous = holder.boundTask;
+        if (previous == null || !TextUtils.equals(previous.getTitle(), task.getTitle())) {
+            holder.taskTextView.setText(task.getTitle());
+        }
         holder.completedCheckBox.setChecked(task.isCompleted());
 
-        // Set priority indicator color
-        int priorityColor;
-        switch (task.getPriority()) {
-            case 1: // Low
-                priorityColor = Color.parseColor("#4CAF50"); // Green
-                break;
-            case 2: // Medium
-                priorityColor = Color.parseColor("#FFC107"); // Yellow
-                break;
-            case 3: // High
-                priorityColor = Color.parseColor("#F44336"); // Red
-                break;
-            default:
-                priorityColor = Color.parseColor("#FFC107"); // Yellow
-        }
-        holder.priorityIndicator.setBackgroundColor(priorityColor);
-
-        // Show completion status visually
-        if (task.isCompleted()) {
-            // Visual indicators for completed task
-            holder.cardView.setCardBackgroundColor(Color.parseColor("#F5F5F5")); // Light grey
-            holder.taskTextView.setTextColor(Color.GRAY);
-            holder.taskTextView.setPaintFlags(holder.taskTextView.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
+        int priority = task.getPriority();
+        if (previous == null || previous.getPriority() != priority) {
+            holder.priorityTextView.setText(task.getPriorityText());
+            holder.priorityIndicator.setBackgroundColor(
+                    priorityColors[priority >= 1 && priority <= 3 ? priority - 1 : 1]);
+        }
+
+        // Completion styling only changes when the state does
+        int completedState = task.isCompleted() ? 1 : 0;
+        if (holder.boundCompletedState != completedState) {
+            holder.boundCompletedState = completedState;
+            if (task.isCompleted()) {
+                holder.cardView.setCardBackgroundColor(completedBackground);
+                holder.taskTextView.setTextColor(completedTitleColor);
+                holder.taskTextView.setPaintFlags(holder.taskTextView.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
+                holder.statusTextView.setText(STATUS_COMPLETED);
+                holder.statusTextView.setTextColor(completedStatusColor);
+            } else {
+                holder.cardView.setCardBackgroundColor(pendingBackground);
+                holder.taskTextView.setTextColor(pendingTitleColor);
+                holder.taskTextView.setPaintFlags(holder.taskTextView.getPaintFlags() & (~Paint.STRIKE_THRU_TEXT_FLAG));
+                holder.statusTextView.setText(STATUS_PENDING);
+                holder.statusTextView.setTextColor(pendingStatusColor);
+            }
             holder.statusTextView.setVisibility(View.VISIBLE);
-            holder.statusTextView.setText("Completed");
-            holder.statusTextView.setTextColor(Color.parseColor("#4CAF50")); // Green
+        }
+
+        holder.boundTask = task;
+        bindActivity(holder, System.currentTimeMillis());
+    }
+
+    // "3 comments • 5m ago". The text is rebuilt only when the count, the latest comment
+    // or the step of its relative time changes, so minute ticks leave most cards alone.
+    private void bindActivity(TaskViewHolder holder, long now) {
+        TaskSummary task = holder.boundTask;
+        int count = task != null ? task.getCommentCount() : 0;
+        long lastCommentAt = count > 0 ? task.getLastCommentAt() : 0;
+        int timeKey = count > 0 ? CommentTimeFormatter.labelKey(lastCommentAt, now) : 0;
+        if (holder.activityBound && count == holder.boundCommentCount
+                && lastCommentAt == holder.boundLastCommentAt && timeKey == holder.boundTimeKey) {
+            return;
+        }
+        holder.activityBound = true;
+        holder.boundCommentCount = count;
+        holder.boundLastCommentAt = lastCommentAt;
+        holder.boundTimeKey = timeKey;
+        if (count == 0) {
+            holder.activityTextView.setVisibility(View.GONE);
         } else {
-            // Visual indicators for incomplete task
-            holder.cardView.setCardBackgroundColor(Color.WHITE);
-            holder.taskTextView.setTextColor(Color.BLACK);
-            holder.taskTextView.setPaintFlags(holder.taskTextView.getPaintFlags() & (~Paint.STRIKE_THRU_TEXT_FLAG));
-            holder.statusTextView.setVisibility(View.VISIBLE);
-            holder.statusTextView.setText("Pending");
-            holder.statusTextView.setTextColor(Color.parseColor("#FFA000")); // Amber
+            holder.activityTextView.setText(count + (count == 1 ? " comment • " : " comments • ")
+                    + timeFormatter.format(lastCommentAt, now));
+            holder.activityTextView.setVisibility(View.VISIBLE);
         }
+    }
 
-        // Set up delete button click listener
-        holder.deleteButton.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                int adapterPosition = holder.getAdapterPosition();
-                if (adapterPosition != RecyclerView.NO_POSITION) {
-                    Task taskToDelete = taskList.get(adapterPosition);
-
-                    // Notify listener (MainActivity) to delete from database
-                    if (listener != null) {
-                        listener.onDeleteTask(taskToDelete);
-                    }
-
-                    // Remove from local list
-                    taskList.remove(adapterPosition);
-                    notifyItemRemoved(adapterPosition);
-                }
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        this.recyclerView = recyclerView;
+        RelativeTimeTicker.getInstance().addListener(this);
+        recyclerView.addOnScrollListener(prefetchOnIdle);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(prefetchOnIdle);
+        recyclerView.removeCallbacks(prefetchVisible);
+        RelativeTimeTicker.getInstance().removeListener(this);
+        this.recyclerView = null;
+        super.onDetachedFromRecyclerView(recyclerView);
+    }
+
+    // Keeps "5m ago" current on the cards that are on screen
+    @Override
+    public void onMinuteTick(long now) {
+        if (recyclerView == null) {
+            return;
+        }
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            if (holder instanceof TaskViewHolder) {
+                bindActivity((TaskViewHolder) holder, now);
             }
-        });
+        }
+    }
 
-        holder.detailsButton.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                Intent intent = new Intent(context, TaskDetailActivity.class);
-                intent.putExtra("taskId", task.getId());
-                intent.putExtra("taskTitle", task.getTitle());
-                intent.putExtra("taskDescription", task.getDescription());
-                intent.putExtra("taskPriority", task.getPriority());
-                intent.putExtra("taskCompleted", task.isCompleted());
-                context.startActivity(intent);
+    private void schedulePrefetch() {
+        if (recyclerView != null) {
+            recyclerView.removeCallbacks(prefetchVisible);
+            recyclerView.postDelayed(prefetchVisible, PREFETCH_DELAY_MS);
+        }
+    }
+
+    // Loads the detail screen's data for the cards currently bound on screen
+    private void prefetchVisibleTasks() {
+        if (recyclerView == null) {
+            return;
+        }
+        int count = Math.min(recyclerView.getChildCount(), MAX_PREFETCH_CARDS);
+        for (int i = 0; i < count; i++) {
+            RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            if (holder instanceof TaskViewHolder && ((TaskViewHolder) holder).boundTask != null) {
+                detailCache.prefetch(((TaskViewHolder) holder).boundTask.getId());
             }
-        });
+        }
+    }
 
-        holder.completedCheckBox.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                boolean isChecked = holder.completedCheckBox.isChecked();
-                task.setCompleted(isChecked);
+    // Click handling for the holder's listeners, which are set up once per holder
+    private TaskSummary taskAt(TaskViewHolder holder) {
+        int adapterPosition = holder.getBindingAdapterPosition();
+        if (adapterPosition == RecyclerView.NO_POSITION) {
+            return null;
+        }
+        return differ.getItem(adapterPosition);
+    }
 
-                // Save changes to database using the activity's method
-                if (listener != null) {
-                    listener.updateTask(task);
-                }
+    void onDeleteClicked(TaskViewHolder holder) {
+        TaskSummary taskToDelete = taskAt(holder);
+        // Notify listener (MainActivity) to delete from database,
+        // the row is removed when the diff of the next page list is dispatched
+        if (listener != null && taskToDelete != null) {
+            listener.onDeleteTask(taskToDelete);
+        }
+    }
 
-                // Update UI
-                notifyItemChanged(position);
-            }
-        });
+    void onDetailsClicked(TaskViewHolder holder) {
+        TaskSummary task = taskAt(holder);
+        if (task == null) {
+            return;
+        }
+        Intent intent = new Intent(context, TaskDetailActivity.class);
+        // The detail screen loads the full task by id
+        intent.putExtra("taskId", task.getId());
+        context.startActivity(intent);
     }
 
-    @Override
-    public int getItemCount() {
-        return taskList.size();
+    // A long-press is a strong hint the task is about to be opened
+    void onCardLongPressed(TaskViewHolder holder) {
+        TaskSummary task = taskAt(holder);
+        if (task != null) {
+            detailCache.prefetch(task.getId());
+        }
+    }
+
+    void onCompletedClicked(TaskViewHolder holder) {
+        TaskSummary task = taskAt(holder);
+        // Save changes to database using the activity's method,
+        // the card is rebound when the diff of the next page list is dispatched
+        if (listener != null && task != null) {
+            listener.onTaskCompletedChanged(task, holder.completedCheckBox.isChecked());
+        }
     }
 
-    // Add this method to support adding tasks
-    public void addTask(Task task) {
-        taskList.add(task);
-        notifyItemInserted(taskList.size() - 1);
+    @Override
+    public int getItemCount() {
+        return differ.getItemCount();
     }
 
-    public void setTasks(List<Task> tasks) {
-        this.taskList = tasks;
-        notifyDataSetChanged();
+    public void submitList(PagedList<TaskSummary> tasks) {
+        differ.submitList(tasks);
     }
 
-    public static class TaskViewHolder extends RecyclerView.ViewHolder {
-        TextView taskTextView, priorityTextView, statusTextView;
+    public static class TaskViewHolder extends RecyclerView.ViewHolder
+            implements View.OnClickListener, View.OnLongClickListener {
+        TextView taskTextView, priorityTextView, statusTextView, activityTextView;
         ImageButton deleteButton, detailsButton;
         CheckBox completedCheckBox;
         View priorityIndicator;
         CardView cardView;
+        // -1 until first bound, then 0 pending or 1 completed
+        int boundCompletedState = -1;
+        TaskSummary boundTask;
+        // What the activity line was last built from
+        boolean activityBound;
+        int boundCommentCount;
+        long boundLastCommentAt;
+        int boundTimeKey;
+        private final TaskAdapter adapter;
 
-        public TaskViewHolder(@NonNull View itemView) {
+        public TaskViewHolder(@NonNull View itemView, TaskAdapter adapter) {
             super(itemView);
+            this.adapter = adapter;
             taskTextView = itemView.findViewById(R.id.taskTextView);
             priorityTextView = itemView.findViewById(R.id.priorityTextView);
             statusTextView = itemView.findViewById(R.id.statusTextView);
+            activityTextView = itemView.findViewById(R.id.activityTextView);
             deleteButton = itemView.findViewById(R.id.deleteButton);
             detailsButton = itemView.findViewById(R.id.detailsButton);
             completedCheckBox = itemView.findViewById(R.id.completedCheckBox);
             priorityIndicator = itemView.findViewById(R.id.priorityIndicator);
             cardView = (CardView) itemView;
+
+            // One listener for the life of the holder; the task is looked up at click time
+            deleteButton.setOnClickListener(this);
+            detailsButton.setOnClickListener(this);
+            completedCheckBox.setOnClickListener(this);
+            itemView.setOnLongClickListener(this);
+        }
+
+        @Override
+        public void onClick(View v) {
+            if (v == deleteButton) {
+                adapter.onDeleteClicked(this);
+            } else if (v == detailsButton) {
+                adapter.onDetailsClicked(this);
+            } else if (v == completedCheckBox) {
+                adapter.onCompletedClicked(this);
+            }
+        }
+
+        @Override
+        public boolean onLongClick(View v) {
+            adapter.onCardLongPressed(this);
+            // Not consumed, the press has no visible action of its own
+            return false;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,679 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Backs up and restores user_table, task_table and comment_table in a compact binary format.
+ *
+ * Export reads each table in keyset pages and writes each row as it is read, so no table
+ * is ever loaded into a list and writers never wait for it. Restore replaces the three
+ * tables in one transaction on the writer thread, reading the file through a
+ * memory-mapped channel when it is uncompressed.
+ *
+ * Format, version 1:
+ * <pre>
+ * "TDBK" | version byte | flags byte (1 = body is gzip)
+ * body: for each table
+ *     name | column count | column names
+ *     rows: varint byte length, then one value per column
+ *     varint 0 ends the table
+ * empty name ends the file
+ * </pre>
+ * Values are a type byte (0 null, 1 integer as zigzag varint, 2 text as varint length and
+ * UTF-8) followed by the data. Restore matches columns by name, so backups survive columns
+ * being added later. Backups contain the user table as stored, password hashes included.
+ */
+public class TaskBackup {
+    private static final String TAG = "TaskBackup";
+
+    static final int FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = {'T', 'D', 'B', 'K'};
+    private static final int HEADER_SIZE = MAGIC.length + 2;
+    private static final int FLAG_GZIP = 1;
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_INTEGER = 1;
+    private static final int TYPE_TEXT = 2;
+
+    // Lengths read from a backup are checked against these before anything is allocated.
+    // Rows come from a cursor, whose window holds at most 2 MB; SQLite allows 2000 columns.
+    private static final int MAX_RECORD_BYTES = 8 * 1024 * 1024;
+    private static final int MAX_COLUMNS = 2000;
+    private static final int MAX_NAME_BYTES = 1024;
+
+    // Rows per export read; each page is a short read of its own
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    // Parents first, so foreign keys hold while restoring
+    private static final List<String> TABLES = Arrays.asList("user_table", "task_table", "comment_table");
+
+    // Result of a finished backup or restore, delivered on the main thread
+    public interface Callback {
+        void onBackupComplete(int users, int tasks, int comments);
+        void onBackupFailed(Exception e);
+    }
+
+    private final Context context;
+    private final TaskDatabase database;
+
+    public TaskBackup(Context context) {
+        this(context, TaskDatabase.getInstance(context.getApplicationContext()));
+    }
+
+    @VisibleForTesting
+    TaskBackup(Context context, TaskDatabase database) {
+        this.context = context.getApplicationContext();
+        this.database = database;
+    }
+
+    public void exportTo(final Uri uri, final boolean compress, final Callback callback) {
+        AppExecutors.getInstance().diskIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                OutputStream output = null;
+                try {
+                    output = context.getContentResolver().openOutputStream(uri, "wt");
+                    if (output == null) {
+                        throw new IOException("Cannot open " + uri);
+                    }
+                    int[] counts = export(output, compress);
+                    notifyComplete(callback, counts);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error writing backup: " + e.getMessage(), e);
+                    notifyFailed(callback, e);
+                } finally {
+                    closeQuietly(output);
+                }
+            }
+        });
+    }
+
+    // Runs on the writer thread: the restore is one write transaction, so queued writes wait for it
+    public void restoreFrom(final Uri uri, final Callback callback) {
+        AppExecutors.getInstance().databaseWrite().execute(new Runnable() {
+            @Override
+            public void run() {
+                ParcelFileDescriptor descriptor = null;
+                try {
+                    descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+                    if (descriptor == null) {
+                        throw new IOException("Cannot open " + uri);
+                    }
+                    FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+                    int[] counts = restore(channel);
+                    notifyComplete(callback, counts);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error restoring backup: " + e.getMessage(), e);
+                    notifyFailed(callback, e);
+                } finally {
+                    if (descriptor != null) {
+                        try {
+                            descriptor.close();
+                        } catch (IOException e) {
+                            Log.e(TAG, "Error closing backup file: " + e.getMessage(), e);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes a backup to the stream and returns the row counts per table. Runs on the caller's thread.
+     */
+    int[] export(OutputStream output, boolean compress) throws IOException {
+        long start = QueryMetrics.now();
+        output.write(MAGIC);
+        output.write(FORMAT_VERSION);
+        output.write(compress ? FLAG_GZIP : 0);
+
+        OutputStream body;
+        if (compress) {
+            // Fastest level: a backup should be quick, most of the gain comes from any compression
+            body = new GZIPOutputStream(output, 64 * 1024) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+        } else {
+            body = new BufferedOutputStream(output, 64 * 1024);
+        }
+        RecordWriter writer = new RecordWriter(body);
+        int[] counts = new int[TABLES.size()];
+
+        // No transaction: under WAL Room's transactions take the write lock, and an export
+        // holding it would stall every write. Instead each table is read only up to the
+        // highest id it had when the export started. Ids are never reused, so a comment whose
+        // task and author are within those bounds, and still exist, had them exported too.
+        long maxUserId = maxRowId("user_table");
+        long maxTaskId = maxRowId("task_table");
+        long maxCommentId = maxRowId("comment_table");
+        counts[0] = exportTable("user_table", maxUserId, "", writer);
+        counts[1] = exportTable("task_table", maxTaskId, "", writer);
+        counts[2] = exportTable("comment_table", maxCommentId, " AND `taskId` <= " + maxTaskId
+                + " AND (`userId` IS NULL OR `userId` <= " + maxUserId + ")", writer);
+        writer.writeString("");
+        writer.flush();
+        if (body instanceof GZIPOutputStream) {
+            ((GZIPOutputStream) body).finish();
+        }
+        body.flush();
+        QueryMetrics.getInstance().record("TaskBackup.export", start, counts[0] + counts[1] + counts[2]);
+        return counts;
+    }
+
+    private long maxRowId(String table) {
+        Cursor cursor = database.query("SELECT MAX(rowid) FROM `" + table + "`", null);
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Pages on rowid rather than one cursor: a cursor re-runs its query with an offset for
+    // every window it fills, which skips or repeats rows when others write in between
+    private int exportTable(String table, long maxRowId, String bounds, RecordWriter writer)
+            throws IOException {
+        String sql = "SELECT rowid, * FROM `" + table + "` WHERE rowid > ? AND rowid <= " + maxRowId
+                + bounds + " ORDER BY rowid LIMIT " + EXPORT_PAGE_SIZE;
+        writer.writeString(table);
+        boolean wroteColumns = false;
+        long lastRowId = Long.MIN_VALUE;
+        int rows = 0;
+        while (true) {
+            Cursor cursor = database.query(sql, new Object[]{lastRowId});
+            try {
+                // Column 0 is the rowid, the table's own columns follow
+                int columnCount = cursor.getColumnCount() - 1;
+                if (!wroteColumns) {
+                    writer.writeVarint(columnCount);
+                    for (int i = 1; i <= columnCount; i++) {
+                        writer.writeString(cursor.getColumnName(i));
+                    }
+                    wroteColumns = true;
+                }
+                int pageRows = 0;
+                while (cursor.moveToNext()) {
+                    lastRowId = cursor.getLong(0);
+                    writer.beginRecord();
+                    for (int i = 1; i <= columnCount; i++) {
+                        switch (cursor.getType(i)) {
+                            case Cursor.FIELD_TYPE_NULL:
+                                writer.recordNull();
+                                break;
+                            case Cursor.FIELD_TYPE_INTEGER:
+                                writer.recordInteger(cursor.getLong(i));
+                                break;
+                            default:
+                                writer.recordText(cursor.getString(i));
+                                break;
+                        }
+                    }
+                    writer.endRecord();
+                    pageRows++;
+                }
+                rows += pageRows;
+                if (pageRows < EXPORT_PAGE_SIZE) {
+                    break;
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        writer.writeVarint(0);
+        return rows;
+    }
+
+    /**
+     * Replaces the three tables with the backup's rows in one transaction. If anything
+     * fails the transaction rolls back and the current data stays as it was.
+     */
+    int[] restore(FileChannel channel) throws IOException {
+        long start = QueryMetrics.now();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                throw new IOException("Not a backup file");
+            }
+        }
+        byte[] magic = Arrays.copyOf(header.array(), MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a backup file");
+        }
+        int version = header.get(MAGIC.length);
+        if (version < 1) {
+            throw new IOException("Corrupt backup: bad format version " + version);
+        }
+        if (version > FORMAT_VERSION) {
+            throw new IOException("Backup was written by a newer version of the app (" + version + ")");
+        }
+        int flags = header.get(MAGIC.length + 1);
+
+        InputStream body;
+        long size = channel.size();
+        if ((flags & FLAG_GZIP) != 0) {
+            body = new GZIPInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024), 64 * 1024);
+        } else if (size > HEADER_SIZE && size <= Integer.MAX_VALUE) {
+            // Uncompressed backups are read straight from the page cache
+            body = new ByteBufferInputStream(
+                    channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size - HEADER_SIZE));
+        } else {
+            body = new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024);
+        }
+
+        // Compressed bodies have no known size, their lengths are only held to the maximums
+        RecordReader reader = new RecordReader(body, (flags & FLAG_GZIP) != 0 ? -1 : size - HEADER_SIZE);
+        int[] counts = new int[TABLES.size()];
+        database.beginTransaction();
+        try {
+            for (int i = TABLES.size() - 1; i >= 0; i--) {
+                database.getOpenHelper().getWritableDatabase().execSQL("DELETE FROM `" + TABLES.get(i) + "`");
+            }
+            String table;
+            while (!(table = reader.readString()).isEmpty()) {
+                int index = TABLES.indexOf(table);
+                if (index < 0) {
+                    throw new IOException("Unknown table in backup: " + table);
+                }
+                counts[index] = restoreTable(table, reader);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        // Cached users and the email filter describe the replaced table
+        UserRepository userRepository = UserRepository.getInstance(context);
+        userRepository.clear();
+        userRepository.loadEmailFilter();
+        TaskDetailCache.getInstance(context).evictAll();
+        resolveSession();
+        QueryMetrics.getInstance().record("TaskBackup.restore", start, counts[0] + counts[1] + counts[2]);
+        return counts;
+    }
+
+    /**
+     * The session holds a user id from before the restore, which may now be missing or
+     * belong to someone else. Emails are unique, so the account is found again by email;
+     * without a match the user is logged out.
+     */
+    private void resolveSession() {
+        SessionManager sessionManager = new SessionManager(context);
+        Session session = sessionManager.getSession();
+        if (!session.isLoggedIn()) {
+            return;
+        }
+        User user = session.getEmail() != null ? database.userDao().getUserByEmail(session.getEmail()) : null;
+        if (user == null) {
+            Log.d(TAG, "Signed-in account is not in the backup, logging out");
+            sessionManager.logoutUser();
+        } else if (user.getId() != session.getUserId()
+                || !TextUtils.equals(user.getFullName(), session.getFullName())) {
+            sessionManager.createLoginSession(user.getId(), user.getEmail(), user.getFullName());
+        }
+    }
+
+    private int restoreTable(String table, RecordReader reader) throws IOException {
+        Set<String> knownColumns = columnsOf(table);
+        int columnCount = reader.readLength(MAX_COLUMNS);
+        String[] columns = new String[columnCount];
+        // Columns this schema no longer has are read and dropped
+        boolean[] keep = new boolean[columnCount];
+        StringBuilder names = new StringBuilder();
+        StringBuilder params = new StringBuilder();
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = reader.readString();
+            keep[i] = knownColumns.contains(columns[i]);
+            if (keep[i]) {
+                if (names.length() > 0) {
+                    names.append(", ");
+                    params.append(", ");
+                }
+                names.append('`').append(columns[i]).append('`');
+                params.append('?');
+            }
+        }
+
+        SupportSQLiteStatement insert = database.compileStatement(
+                "INSERT INTO `" + table + "` (" + names + ") VALUES (" + params + ")");
+        try {
+            int rows = 0;
+            while (reader.beginRecord()) {
+                int bindIndex = 1;
+                for (int i = 0; i < columnCount; i++) {
+                    int type = reader.readType();
+                    if (!keep[i]) {
+                        reader.skipValue(type);
+                        continue;
+                    }
+                    if (type == TYPE_NULL) {
+                        insert.bindNull(bindIndex);
+                    } else if (type == TYPE_INTEGER) {
+                        insert.bindLong(bindIndex, reader.readInteger());
+                    } else if (type == TYPE_TEXT) {
+                        insert.bindString(bindIndex, reader.readText());
+                    } else {
+                        throw new IOException("Corrupt backup: value type " + type);
+                    }
+                    bindIndex++;
+                }
+                reader.endRecord();
+                insert.executeInsert();
+                insert.clearBindings();
+                rows++;
+            }
+            return rows;
+        } finally {
+            try {
+                insert.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing insert statement: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private Set<String> columnsOf(String table) {
+        Set<String> columns = new HashSet<>();
+        Cursor cursor = database.query("PRAGMA table_info(`" + table + "`)", null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(nameIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+
+    private void notifyComplete(final Callback callback, final int[] counts) {
+        AppExecutors.getInstance().mainThread().execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onBackupComplete(counts[0], counts[1], counts[2]);
+            }
+        });
+    }
+
+    private void notifyFailed(final Callback callback, final Exception e) {
+        AppExecutors.getInstance().mainThread().execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onBackupFailed(e);
+            }
+        });
+    }
+
+    private static void closeQuietly(OutputStream output) {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing backup file: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Builds each row in a reused buffer so its length can be written in front of it
+    private static class RecordWriter {
+        private final OutputStream output;
+        private byte[] record = new byte[256];
+        private int recordLength;
+        private final byte[] scratch = new byte[10];
+
+        RecordWriter(OutputStream output) {
+            this.output = output;
+        }
+
+        void beginRecord() {
+            recordLength = 0;
+        }
+
+        void recordNull() {
+            append(TYPE_NULL);
+        }
+
+        void recordInteger(long value) {
+            append(TYPE_INTEGER);
+            appendVarint((value << 1) ^ (value >> 63));
+        }
+
+        void recordText(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            append(TYPE_TEXT);
+            appendVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, record, recordLength, bytes.length);
+            recordLength += bytes.length;
+        }
+
+        void endRecord() throws IOException {
+            writeVarint(recordLength);
+            output.write(record, 0, recordLength);
+        }
+
+        void writeVarint(long value) throws IOException {
+            output.write(scratch, 0, encodeVarint(value, scratch, 0));
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            output.write(bytes);
+        }
+
+        void flush() throws IOException {
+            output.flush();
+        }
+
+        private void append(int b) {
+            ensureCapacity(1);
+            record[recordLength++] = (byte) b;
+        }
+
+        private void appendVarint(long value) {
+            ensureCapacity(10);
+            recordLength += encodeVarint(value, record, recordLength);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (recordLength + extra > record.length) {
+                record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + extra));
+            }
+        }
+
+        private static int encodeVarint(long value, byte[] buffer, int offset) {
+            int position = offset;
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+            return position - offset;
+        }
+    }
+
+    // Reads each row into a reused buffer, checking the row ends exactly where its length says
+    private static class RecordReader {
+        private final InputStream input;
+        // Bytes in the body, or -1 when unknown
+        private final long bodySize;
+        private long consumed;
+        private byte[] record = new byte[256];
+        private int recordLength;
+        private int position;
+
+        RecordReader(InputStream input, long bodySize) {
+            this.input = input;
+            this.bodySize = bodySize;
+        }
+
+        // False at the end of the table
+        boolean beginRecord() throws IOException {
+            int length = readLength(MAX_RECORD_BYTES);
+            if (length == 0) {
+                return false;
+            }
+            if (length > record.length) {
+                record = new byte[Math.max(record.length * 2, length)];
+            }
+            readFully(record, length);
+            recordLength = length;
+            position = 0;
+            return true;
+        }
+
+        void endRecord() throws IOException {
+            if (position != recordLength) {
+                throw new IOException("Corrupt backup: row length mismatch");
+            }
+        }
+
+        int readType() throws IOException {
+            checkAvailable(1);
+            return record[position++];
+        }
+
+        long readInteger() throws IOException {
+            long raw = readRecordVarint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        String readText() throws IOException {
+            int length = readRecordLength();
+            String value = new String(record, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        void skipValue(int type) throws IOException {
+            if (type == TYPE_INTEGER) {
+                readRecordVarint();
+            } else if (type == TYPE_TEXT) {
+                position += readRecordLength();
+            }
+        }
+
+        // A length or count from the file, rejected if over max or past the end of the body
+        int readLength(int max) throws IOException {
+            long length = readVarint();
+            if (length > max || (bodySize >= 0 && length > bodySize - consumed)) {
+                throw new IOException("Corrupt backup: bad length " + length);
+            }
+            return (int) length;
+        }
+
+        private long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = input.read();
+                if (b < 0) {
+                    throw new EOFException("Backup file is truncated");
+                }
+                consumed++;
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Corrupt backup: bad length");
+        }
+
+        String readString() throws IOException {
+            int length = readLength(MAX_NAME_BYTES);
+            byte[] bytes = new byte[length];
+            readFully(bytes, length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private long readRecordVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                checkAvailable(1);
+                int b = record[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Corrupt backup: bad integer");
+        }
+
+        private int readRecordLength() throws IOException {
+            long length = readRecordVarint();
+            if (length < 0 || length > recordLength - position) {
+                throw new IOException("Corrupt backup: value runs past the end of its row");
+            }
+            return (int) length;
+        }
+
+        private void checkAvailable(int count) throws IOException {
+            if (count < 0 || count > recordLength - position) {
+                throw new IOException("Corrupt backup: value runs past the end of its row");
+            }
+        }
+
+        private void readFully(byte[] buffer, int length) throws IOException {
+            int read = 0;
+            while (read < length) {
+                int n = input.read(buffer, read, length - read);
+                if (n < 0) {
+                    throw new EOFException("Backup file is truncated");
+                }
+                read += n;
+                consumed += n;
+            }
+        }
+    }
+
+    // Reads a mapped file region without copying it into the Java heap first
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+    }
+}
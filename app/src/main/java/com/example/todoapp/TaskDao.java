@@ -1,16 +1,19 @@
 package com.example.todoapp;
 
-import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
 import androidx.room.Update;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Dao
 public interface TaskDao {
+    // Tasks returned per search, only these get snippets
+    int SEARCH_RESULT_LIMIT = 50;
+
     @Insert
     void insert(Task task);
 
@@ -20,12 +23,145 @@ public interface TaskDao {
     @Delete
     void delete(Task task);
 
+    @Insert
+    List<Long> insertAll(List<Task> tasks);
+
+    @Update
+    void updateAll(List<Task> tasks);
+
+    @Delete
+    void deleteAll(List<Task> tasks);
+
+    @Query("DELETE FROM task_table WHERE id IN (:ids)")
+    void deleteByIds(List<Integer> ids);
+
+    // Field-level updates: each writes one column, so a toggle can't overwrite a newer edit of another column
+    @Query("UPDATE task_table SET isCompleted = :completed WHERE id = :id")
+    void setCompleted(int id, boolean completed);
+
+    @Query("UPDATE task_table SET isCompleted = :completed WHERE id IN (:ids)")
+    void setCompletedForIds(List<Integer> ids, boolean completed);
+
+    @Query("UPDATE task_table SET priority = :priority WHERE id = :id")
+    void setPriority(int id, int priority);
+
+    // One-shot read, observed through TaskRepository.getTask and used for prefetching
+    @Query("SELECT * FROM task_table WHERE id = :id")
+    Task findTaskById(int id);
+
+    // Primary key lookups for TaskDetailCache to recheck the tasks it holds after a change
+    @Query("SELECT * FROM task_table WHERE id IN (:ids)")
+    List<Task> findTasksByIds(List<Integer> ids);
+
+    @Query("SELECT * FROM task_activity WHERE taskId IN (:ids)")
+    List<TaskActivity> getActivityForTasks(List<Integer> ids);
+
     @Query("DELETE FROM task_table WHERE isCompleted = 1")
     void deleteCompletedTasks();
 
-    @Query("SELECT * FROM task_table ORDER BY priority DESC")
-    LiveData<List<Task>> getAllTasks();
+    // All header counts in one pass over index_task_table_isCompleted_priority, which covers the query
+    // so the long description column is never read
+    @Query("SELECT COUNT(*) AS total, " +
+            "COALESCE(SUM(isCompleted = 1), 0) AS completed, " +
+            "COALESCE(SUM(priority = 1), 0) AS lowCount, " +
+            "COALESCE(SUM(priority = 2), 0) AS mediumCount, " +
+            "COALESCE(SUM(priority = 3), 0) AS highCount " +
+            "FROM task_table")
+    TaskStats getTaskStats();
+
+    // Keyset pages by priority, ordered (priority DESC, id DESC) to match index_task_table_priority_id.
+    // task_table drives every page query; task_activity is a primary key lookup per row.
+    @Query("SELECT " + TaskSummary.COLUMNS + " FROM " + TaskSummary.FROM + " WHERE (:showCompleted OR isCompleted = 0) ORDER BY priority DESC, id DESC LIMIT :limit")
+    List<TaskSummary> getFirstPageByPriority(boolean showCompleted, int limit);
+
+    @Query("SELECT " + TaskSummary.COLUMNS + " FROM " + TaskSummary.FROM + " WHERE priority <= :priority AND (priority < :priority OR id < :id) " +
+            "AND (:showCompleted OR isCompleted = 0) " +
+            "ORDER BY priority DESC, id DESC LIMIT :limit")
+    List<TaskSummary> getPageByPriorityAfter(int priority, int id, boolean showCompleted, int limit);
+
+    // Returned in reverse order (closest to the key first)
+    @Query("SELECT " + TaskSummary.COLUMNS + " FROM " + TaskSummary.FROM + " WHERE priority >= :priority AND (priority > :priority OR id > :id) " +
+            "AND (:showCompleted OR isCompleted = 0) " +
+            "ORDER BY priority ASC, id ASC LIMIT :limit")
+    List<TaskSummary> getPageByPriorityBefore(int priority, int id, boolean showCompleted, int limit);
+
+    // Keyset pages by title, ordered (title ASC, id ASC) to match index_task_table_title_id
+    @Query("SELECT " + TaskSummary.COLUMNS + " FROM " + TaskSummary.FROM + " WHERE (:showCompleted OR isCompleted = 0) ORDER BY title ASC, id ASC LIMIT :limit")
+    List<TaskSummary> getFirstPageAlphabetically(boolean showCompleted, int limit);
+
+    @Query("SELECT " + TaskSummary.COLUMNS + " FROM " + TaskSummary.FROM + " WHERE title >= :title AND (title > :title OR id > :id) " +
+            "AND (:showCompleted OR isCompleted = 0) " +
+            "ORDER BY title ASC, id ASC LIMIT :limit")
+    List<TaskSummary> getPageAlphabeticallyAfter(String title, int id, boolean showCompleted, int limit);
+
+    // Returned in reverse order (closest to the key first)
+    @Query("SELECT " + TaskSummary.COLUMNS + " FROM " + TaskSummary.FROM + " WHERE title <= :title AND (title < :title OR id < :id) " +
+            "AND (:showCompleted OR isCompleted = 0) " +
+            "ORDER BY title DESC, id DESC LIMIT :limit")
+    List<TaskSummary> getPageAlphabeticallyBefore(String title, int id, boolean showCompleted, int limit);
+
+    // NULL titles sort before every title and never match the range seeks above,
+    // so TaskKeysetDataSource pages them with these (an equality seek on the same index)
+    @Query("SELECT " + TaskSummary.COLUMNS + " FROM " + TaskSummary.FROM + " WHERE title IS NULL AND id > :id " +
+            "AND (:showCompleted OR isCompleted = 0) " +
+            "ORDER BY title ASC, id ASC LIMIT :limit")
+    List<TaskSummary> getUntitledPageAfter(int id, boolean showCompleted, int limit);
+
+    // Returned in reverse order (closest to the key first)
+    @Query("SELECT " + TaskSummary.COLUMNS + " FROM " + TaskSummary.FROM + " WHERE title IS NULL AND id < :id " +
+            "AND (:showCompleted OR isCompleted = 0) " +
+            "ORDER BY title DESC, id DESC LIMIT :limit")
+    List<TaskSummary> getUntitledPageBefore(int id, boolean showCompleted, int limit);
+
+    // Every full-text match in task titles and descriptions, for ranking; see TaskSearchResult
+    @Query("SELECT rowid AS rowId, rowid AS taskId, 0 AS fromComment, " +
+            "matchinfo(task_fts, 'pcx') AS matchInfo FROM task_fts WHERE task_fts MATCH :match")
+    List<TaskSearchResult.Hit> matchTaskHits(String match);
+
+    // Every full-text match in comments, with the task it belongs to (a primary key lookup)
+    @Query("SELECT comment_fts.rowid AS rowId, comment_table.taskId AS taskId, 1 AS fromComment, " +
+            "matchinfo(comment_fts, 'pcx') AS matchInfo " +
+            "FROM comment_fts JOIN comment_table ON comment_table.id = comment_fts.rowid " +
+            "WHERE comment_fts MATCH :match")
+    List<TaskSearchResult.Hit> matchCommentHits(String match);
+
+    // Snippets for the ranked task hits only, snippet() reads the content rows
+    @Query("SELECT task_table.id, task_table.title, task_table.priority, task_table.isCompleted, " +
+            "snippet(task_fts, '" + TaskSearchResult.HIGHLIGHT_START + "', '" + TaskSearchResult.HIGHLIGHT_END +
+            "', '…', -1, 12) AS snippet " +
+            "FROM task_fts JOIN task_table ON task_table.id = task_fts.rowid " +
+            "WHERE task_fts MATCH :match AND task_fts.rowid IN (:rowIds)")
+    List<TaskSearchResult> getTaskSnippets(String match, List<Integer> rowIds);
+
+    // Snippets for the ranked comment hits, reported against the task they belong to
+    @Query("SELECT task_table.id, task_table.title, task_table.priority, task_table.isCompleted, " +
+            "snippet(comment_fts, '" + TaskSearchResult.HIGHLIGHT_START + "', '" + TaskSearchResult.HIGHLIGHT_END +
+            "', '…', -1, 12) AS snippet " +
+            "FROM comment_fts JOIN comment_table ON comment_table.id = comment_fts.rowid " +
+            "JOIN task_table ON task_table.id = comment_table.taskId " +
+            "WHERE comment_fts MATCH :match AND comment_fts.rowid IN (:rowIds)")
+    List<TaskSearchResult> getCommentSnippets(String match, List<Integer> rowIds);
 
-    @Query("SELECT * FROM task_table ORDER BY title ASC")
-    LiveData<List<Task>> getAllTasksAlphabetically();
-}
\ No newline at end of file
+    /**
+     * Ranked prefix search over task titles, descriptions and comments.
+     * Every match is scored from its matchinfo, which only reads the FTS index; the
+     * content rows are read just for the SEARCH_RESULT_LIMIT best tasks' snippets.
+     * Must be called off the main thread.
+     */
+    default List<TaskSearchResult> searchTasks(String query) {
+        String match = TaskSearchResult.toMatchQuery(query);
+        if (match == null) {
+            return new ArrayList<>();
+        }
+        List<TaskSearchResult.Hit> ranked = TaskSearchResult.rank(matchTaskHits(match),
+                matchCommentHits(match), SEARCH_RESULT_LIMIT);
+        List<Integer> taskRows = new ArrayList<>();
+        List<Integer> commentRows = new ArrayList<>();
+        for (TaskSearchResult.Hit hit : ranked) {
+            (hit.isFromComment() ? commentRows : taskRows).add(hit.getRowId());
+        }
+        return TaskSearchResult.inRankOrder(ranked,
+                taskRows.isEmpty() ? new ArrayList<TaskSearchResult>() : getTaskSnippets(match, taskRows),
+                commentRows.isEmpty() ? new ArrayList<TaskSearchResult>() : getCommentSnippets(match, commentRows));
+    }
+}
@@ -1,49 +1,305 @@
 package com.example.todoapp;
 
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.database.Cursor;
+import android.os.Looper;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {Task.class, Comment.class, User.class}, version = 4)
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+@Database(entities = {Task.class, Comment.class, User.class, TaskFts.class, CommentFts.class,
+        TaskActivity.class},
+        version = 10, exportSchema = true)
 public abstract class TaskDatabase extends RoomDatabase {
 
     private static TaskDatabase instance;
+    // The thread the app's database was opened on, TodoApplication keeps it off the main thread
+    private static volatile Thread openedOn;
     public abstract TaskDao taskDao();
     public abstract CommentDao commentDao();
     public abstract UserDao userDao();
 
-    // Define migrations
+    // Define migrations. app/schemas holds a schema for every version from 3 on; those before
+    // the current one were rebuilt from these migrations. TaskDatabaseMigrationTest runs them.
     static final Migration MIGRATION_3_4 = new Migration(3, 4) {
         @Override
         public void migrate(@NonNull SupportSQLiteDatabase database) {
             // Create the user table if it doesn't exist already
             database.execSQL(
-                    "CREATE TABLE IF NOT EXISTS user_table (" +
-                            "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
-                            "email TEXT, " +
-                            "password TEXT, " +
-                            "fullName TEXT)"
+                    "CREATE TABLE IF NOT EXISTS `user_table` (" +
+                            "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                            "`email` TEXT, " +
+                            "`password` TEXT, " +
+                            "`fullName` TEXT)"
             );
 
-            // Update comment table to include user information if needed
-            database.execSQL("ALTER TABLE comment_table ADD COLUMN IF NOT EXISTS userId INTEGER");
-            database.execSQL("ALTER TABLE comment_table ADD COLUMN IF NOT EXISTS userFullName TEXT");
+            // SQLite can't add foreign keys (or use ADD COLUMN IF NOT EXISTS), so rebuild
+            // comment_table with the version 4 definition and copy the rows over in one statement
+            boolean hasUserColumns = hasColumn(database, "comment_table", "userId")
+                    && hasColumn(database, "comment_table", "userFullName");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `comment_table_new` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`taskId` INTEGER NOT NULL, " +
+                    "`userId` INTEGER, " +
+                    "`userFullName` TEXT, " +
+                    "`text` TEXT, " +
+                    "`timestamp` INTEGER NOT NULL, " +
+                    "FOREIGN KEY(`taskId`) REFERENCES `task_table`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE , " +
+                    "FOREIGN KEY(`userId`) REFERENCES `user_table`(`id`) ON UPDATE NO ACTION ON DELETE SET NULL )");
+            database.execSQL("INSERT INTO `comment_table_new` " +
+                    "(`id`, `taskId`, `userId`, `userFullName`, `text`, `timestamp`) " +
+                    "SELECT `id`, `taskId`, " +
+                    (hasUserColumns ? "`userId`, `userFullName`" : "NULL, NULL") +
+                    ", `text`, `timestamp` FROM `comment_table`");
+            database.execSQL("DROP TABLE `comment_table`");
+            database.execSQL("ALTER TABLE `comment_table_new` RENAME TO `comment_table`");
+        }
+    };
+
+    static boolean hasColumn(SupportSQLiteDatabase database, String table, String column) {
+        Cursor cursor = database.query("PRAGMA table_info(`" + table + "`)");
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                if (column.equals(cursor.getString(nameIndex))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Indexes backing keyset paging of the task list
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_task_table_priority_id` " +
+                    "ON `task_table` (`priority`, `id`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_task_table_title_id` " +
+                    "ON `task_table` (`title`, `id`)");
+        }
+    };
+
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Indexes for the comment timeline and the foreign key lookups
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_comment_table_taskId_timestamp` " +
+                    "ON `comment_table` (`taskId`, `timestamp`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_comment_table_userId` " +
+                    "ON `comment_table` (`userId`)");
+        }
+    };
+
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // External content FTS tables with the same sync triggers Room creates for a fresh install
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `task_fts` " +
+                    "USING FTS4(`title` TEXT, `description` TEXT, content=`task_table`)");
+            createFtsSyncTriggers(database, "task_fts", "task_table", "`title`, `description`",
+                    "NEW.`title`, NEW.`description`");
+            database.execSQL("INSERT INTO `task_fts`(`task_fts`) VALUES('rebuild')");
+
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `comment_fts` " +
+                    "USING FTS4(`text` TEXT, content=`comment_table`)");
+            createFtsSyncTriggers(database, "comment_fts", "comment_table", "`text`", "NEW.`text`");
+            database.execSQL("INSERT INTO `comment_fts`(`comment_fts`) VALUES('rebuild')");
+        }
+    };
+
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Covering index for the task statistics header
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_task_table_isCompleted_priority` " +
+                    "ON `task_table` (`isCompleted`, `priority`)");
+        }
+    };
+
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Registration checked emails without a constraint, so duplicates may exist.
+            // Login always found the oldest account, which keeps its email; the newer ones
+            // are renamed rather than deleted, so no account or comment authorship is lost.
+            // NULL emails don't collide under a unique index and are left alone.
+            database.execSQL("UPDATE `user_table` SET `email` = `email` || '+dup' || `id` " +
+                    "WHERE `email` IS NOT NULL AND `id` NOT IN " +
+                    "(SELECT MIN(`id`) FROM `user_table` WHERE `email` IS NOT NULL GROUP BY `email`)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_user_table_email` " +
+                    "ON `user_table` (`email`)");
+        }
+    };
+
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `task_activity` (`taskId` INTEGER NOT NULL, " +
+                    "`commentCount` INTEGER NOT NULL, `lastCommentAt` INTEGER NOT NULL, PRIMARY KEY(`taskId`), " +
+                    "FOREIGN KEY(`taskId`) REFERENCES `task_table`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            // One pass over index_comment_table_taskId_timestamp, the comment rows themselves aren't read
+            database.execSQL("INSERT INTO `task_activity` (`taskId`, `commentCount`, `lastCommentAt`) " +
+                    "SELECT `taskId`, COUNT(*), MAX(`timestamp`) FROM `comment_table` GROUP BY `taskId`");
+            createCommentActivityTriggers(database);
+        }
+    };
+
+    /**
+     * Keeps task_activity in step with comment_table. Inserts are O(1); deletes and moves
+     * find the new latest comment with one seek on index_comment_table_taskId_timestamp.
+     */
+    static void createCommentActivityTriggers(SupportSQLiteDatabase database) {
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS comment_activity_AFTER_INSERT " +
+                "AFTER INSERT ON `comment_table` BEGIN " +
+                "INSERT OR IGNORE INTO `task_activity` (`taskId`, `commentCount`, `lastCommentAt`) " +
+                "VALUES (NEW.`taskId`, 0, 0); " +
+                "UPDATE `task_activity` SET `commentCount` = `commentCount` + 1, " +
+                "`lastCommentAt` = MAX(`lastCommentAt`, NEW.`timestamp`) WHERE `taskId` = NEW.`taskId`; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS comment_activity_AFTER_DELETE " +
+                "AFTER DELETE ON `comment_table` BEGIN " +
+                "UPDATE `task_activity` SET `commentCount` = `commentCount` - 1, " +
+                "`lastCommentAt` = COALESCE((SELECT MAX(`timestamp`) FROM `comment_table` " +
+                "WHERE `taskId` = OLD.`taskId`), 0) WHERE `taskId` = OLD.`taskId`; END");
+        // Only a move to another task or a changed timestamp affects the counters
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS comment_activity_AFTER_UPDATE " +
+                "AFTER UPDATE OF `taskId`, `timestamp` ON `comment_table` BEGIN " +
+                "UPDATE `task_activity` SET `commentCount` = `commentCount` - 1 WHERE `taskId` = OLD.`taskId`; " +
+                "INSERT OR IGNORE INTO `task_activity` (`taskId`, `commentCount`, `lastCommentAt`) " +
+                "VALUES (NEW.`taskId`, 0, 0); " +
+                "UPDATE `task_activity` SET `commentCount` = `commentCount` + 1 WHERE `taskId` = NEW.`taskId`; " +
+                "UPDATE `task_activity` SET `lastCommentAt` = COALESCE((SELECT MAX(`timestamp`) " +
+                "FROM `comment_table` WHERE `taskId` = `task_activity`.`taskId`), 0) " +
+                "WHERE `taskId` IN (OLD.`taskId`, NEW.`taskId`); END");
+    }
+
+    private static void createFtsSyncTriggers(SupportSQLiteDatabase database, String ftsTable,
+                                              String contentTable, String columns, String newValues) {
+        String prefix = "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_" + ftsTable + "_";
+        database.execSQL(prefix + "BEFORE_UPDATE BEFORE UPDATE ON `" + contentTable + "` BEGIN " +
+                "DELETE FROM `" + ftsTable + "` WHERE `docid`=OLD.`rowid`; END");
+        database.execSQL(prefix + "BEFORE_DELETE BEFORE DELETE ON `" + contentTable + "` BEGIN " +
+                "DELETE FROM `" + ftsTable + "` WHERE `docid`=OLD.`rowid`; END");
+        database.execSQL(prefix + "AFTER_UPDATE AFTER UPDATE ON `" + contentTable + "` BEGIN " +
+                "INSERT INTO `" + ftsTable + "`(`docid`, " + columns + ") VALUES (NEW.`rowid`, " + newValues + "); END");
+        database.execSQL(prefix + "AFTER_INSERT AFTER INSERT ON `" + contentTable + "` BEGIN " +
+                "INSERT INTO `" + ftsTable + "`(`docid`, " + columns + ") VALUES (NEW.`rowid`, " + newValues + "); END");
+    }
+
+    // Room creates tables but not our own triggers, both on a fresh install and when it
+    // drops and recreates everything after a destructive migration
+    static final Callback CREATE_TRIGGERS = new Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            createCommentActivityTriggers(db);
+        }
+
+        @Override
+        public void onDestructiveMigration(@NonNull SupportSQLiteDatabase db) {
+            createCommentActivityTriggers(db);
+        }
+    };
+
+    private static final Callback RECORD_OPEN_THREAD = new Callback() {
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            openedOn = Thread.currentThread();
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                Log.w("TaskDatabase", "Database opened on the main thread");
+            }
         }
     };
 
+    static final Migration[] ALL_MIGRATIONS = {
+            MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8,
+            MIGRATION_8_9, MIGRATION_9_10
+    };
+
+    /**
+     * Runs body in a transaction on the writer thread and waits for it. Long jobs call this
+     * once per batch from their own thread, so writes queued by the UI get the writer in
+     * between. Never call it from the writer thread itself.
+     */
+    public void runOnWriter(final Runnable body) {
+        FutureTask<Void> transaction = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+                runInTransaction(body);
+            }
+        }, null);
+        AppExecutors.getInstance().databaseWrite().execute(transaction);
+        try {
+            transaction.get();
+        } catch (InterruptedException e) {
+            // The batch still commits or rolls back on the writer, only the wait is cut short
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the database writer", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
     public static synchronized TaskDatabase getInstance(Context context) {
         if (instance == null) {
-            instance = Room.databaseBuilder(context.getApplicationContext(),
+            Builder<TaskDatabase> builder = Room.databaseBuilder(context.getApplicationContext(),
                             TaskDatabase.class, "task_database")
-                    .addMigrations(MIGRATION_3_4)
-                    .fallbackToDestructiveMigration() // As a last resort
-                    .build();
+                    .addMigrations(ALL_MIGRATIONS)
+                    // WAL lets list and comment reads run while a write transaction is open.
+                    // Reads and transactions get separate executors so one can't starve the other.
+                    .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                    .setQueryExecutor(AppExecutors.getInstance().databaseRead())
+                    .setTransactionExecutor(AppExecutors.getInstance().databaseWrite())
+                    .addCallback(CREATE_TRIGGERS)
+                    .addCallback(RECORD_OPEN_THREAD)
+                    // Only versions older than any shipped migration start over, never 3 and up
+                    .fallbackToDestructiveMigrationFrom(1, 2);
+            // Debug builds only: the callback builds a String for every statement Room runs.
+            // Runs inline so QueryMetrics can pair each statement with the timed DAO call.
+            if ((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+                builder.setQueryCallback(QueryMetrics.getInstance(), new Executor() {
+                    @Override
+                    public void execute(@NonNull Runnable command) {
+                        command.run();
+                    }
+                });
+            }
+            instance = builder.build();
         }
         return instance;
     }
+
+    @VisibleForTesting
+    static Thread getOpenedOn() {
+        return openedOn;
+    }
+
+    // Lets tests start from a database that hasn't been opened yet
+    @VisibleForTesting
+    static synchronized void resetInstance() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+        openedOn = null;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,5 @@
 package com.example.todoapp;
 
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
@@ -11,37 +10,32 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.PagedList;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
-
 public class TaskDetailActivity extends AppCompatActivity {
 
-    private TaskViewModel taskViewModel;
+    private TaskDetailViewModel taskViewModel;
     private Task currentTask;
     private Button markCompleteButton;
     private int taskId;
     private EditText newCommentEditText;
     private CommentAdapter commentAdapter;
-    private TaskDatabase taskDatabase;
-    private CommentDao commentDao;
     private SessionManager sessionManager;
+    private TextView titleTextView;
+    private TextView descriptionTextView;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_task_detail);
 
-        // Initialize database and DAOs
-        taskDatabase = TaskDatabase.getInstance(this);
-        commentDao = taskDatabase.commentDao();
-
         // Initialize session manager
         sessionManager = new SessionManager(this);
 
         // Initialize ViewModel
-        taskViewModel = new ViewModelProvider(this).get(TaskViewModel.class);
+        taskViewModel = new ViewModelProvider(this).get(TaskDetailViewModel.class);
 
         // Set up the action bar
         if (getSupportActionBar() != null) {
@@ -50,8 +44,8 @@ public class TaskDetailActivity extends AppCompatActivity {
         }
 
         // Get views from layout
-        TextView titleTextView = findViewById(R.id.detailTitleTextView);
-        TextView descriptionTextView = findViewById(R.id.detailDescriptionTextView);
+        titleTextView = findViewById(R.id.detailTitleTextView);
+        descriptionTextView = findViewById(R.id.detailDescriptionTextView);
         markCompleteButton = findViewById(R.id.markCompleteButton);
         Button backButton = findViewById(R.id.backButton);
 
@@ -64,31 +58,34 @@ public class TaskDetailActivity extends AppCompatActivity {
         commentAdapter = new CommentAdapter();
         commentsRecyclerView.setAdapter(commentAdapter);
 
-        // Get data from intent
+        // Only the id comes from the intent, the task itself is loaded from the database
         taskId = getIntent().getIntExtra("taskId", -1);
-        String title = getIntent().getStringExtra("taskTitle");
-        String description = getIntent().getStringExtra("taskDescription");
-        boolean isCompleted = getIntent().getBooleanExtra("taskCompleted", false);
-        int priority = getIntent().getIntExtra("taskPriority", 2);
-
-        // Create task object
-        currentTask = new Task(title, description, priority);
-        currentTask.setId(taskId);
-        currentTask.setCompleted(isCompleted);
 
-        // Set data to views
-        titleTextView.setText(title);
-        descriptionTextView.setText(description);
+        // Load task and comments for this task
+        if (taskId != -1) {
+            taskViewModel.setTaskId(taskId);
+            // A prefetched task fills the first frame, the live row below replaces it
+            Task cachedTask = taskViewModel.getCachedTask();
+            if (cachedTask != null) {
+                showTask(cachedTask);
+            }
 
-        // Update button text based on completion status
-        updateCompleteButtonText(isCompleted);
+            taskViewModel.getTask().observe(this, new Observer<Task>() {
+                @Override
+                public void onChanged(Task task) {
+                    if (task == null) {
+                        // Deleted while the screen was open
+                        finish();
+                        return;
+                    }
+                    showTask(task);
+                }
+            });
 
-        // Load comments for this task
-        if (taskId != -1) {
-            taskDatabase.commentDao().getCommentsForTask(taskId).observe(this, new Observer<List<Comment>>() {
+            taskViewModel.getComments().observe(this, new Observer<PagedList<CommentItem>>() {
                 @Override
-                public void onChanged(List<Comment> comments) {
-                    commentAdapter.setComments(comments);
+                public void onChanged(PagedList<CommentItem> comments) {
+                    commentAdapter.submitList(comments);
                 }
             });
         }
@@ -97,13 +94,15 @@ public class TaskDetailActivity extends AppCompatActivity {
         markCompleteButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
+                if (currentTask == null) {
+                    return;
+                }
                 boolean newStatus = !currentTask.isCompleted();
-                currentTask.setCompleted(newStatus);
                 updateCompleteButtonText(newStatus);
 
-                // Save the updated status to database
+                // Write only the completion flag, the observed row refreshes the rest
                 if (taskId != -1) {
-                    taskViewModel.update(currentTask);
+                    taskViewModel.setCompleted(newStatus);
                 }
 
                 Toast.makeText(TaskDetailActivity.this,
@@ -129,6 +128,13 @@ public class TaskDetailActivity extends AppCompatActivity {
         });
     }
 
+    private void showTask(Task task) {
+        currentTask = task;
+        titleTextView.setText(task.getTitle());
+        descriptionTextView.setText(task.getDescription());
+        updateCompleteButtonText(task.isCompleted());
+    }
+
     private void updateCompleteButtonText(boolean isCompleted) {
         if (isCompleted) {
             markCompleteButton.setText("Mark as Incomplete");
@@ -147,15 +153,16 @@ public class TaskDetailActivity extends AppCompatActivity {
 
         if (taskId != -1) {
             // Create comment with user information
+            Session session = sessionManager.getSession();
             Comment newComment = new Comment(
                     taskId,
-                    sessionManager.getUserId(),
-                    sessionManager.getUserFullName(),
+                    session.getUserId(),
+                    session.getFullName(),
                     commentText
             );
 
-            // Insert comment in background thread
-            new InsertCommentAsyncTask(commentDao).execute(newComment);
+            // Insert comment through the shared write queue
+            taskViewModel.insertComment(newComment);
 
             // Clear the input field
             newCommentEditText.setText("");
@@ -163,21 +170,6 @@ public class TaskDetailActivity extends AppCompatActivity {
         }
     }
 
-    // AsyncTask for inserting comments
-    private static class InsertCommentAsyncTask extends AsyncTask<Comment, Void, Void> {
-        private CommentDao commentDao;
-
-        private InsertCommentAsyncTask(CommentDao commentDao) {
-            this.commentDao = commentDao;
-        }
-
-        @Override
-        protected Void doInBackground(Comment... comments) {
-            commentDao.insert(comments[0]);
-            return null;
-        }
-    }
-
     // Handle the up/back button in the action bar
     @Override
     public boolean onSupportNavigateUp() {
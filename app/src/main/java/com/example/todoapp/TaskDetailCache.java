@@ -0,0 +1,288 @@
+package com.example.todoapp;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Full task rows and their first page of comments, loaded before the detail screen opens.
+ *
+ * The list screen calls {@link #prefetch(int)} for the cards on screen and for a long-pressed
+ * card, so opening one usually finds its data here and draws the first frame without a query.
+ * The cache is sized from the device's memory class and trimmed on memory pressure.
+ * When task_table or comment_table changes, the cached tasks are checked against the
+ * database by primary key and only those whose row or comment counters changed are
+ * dropped. Comment edits that leave the counters alone, i.e. author renames, evict
+ * through {@link #evictCommentsBy(int)}. Prefetches are skipped while the read pool
+ * is busy with work the user is waiting for.
+ */
+public class TaskDetailCache {
+    private static final String TAG = "TaskDetailCache";
+    // 1/64 of the app's heap class, e.g. 3 MB on a 192 MB device
+    private static final int HEAP_FRACTION = 64;
+    private static final int MIN_SIZE_BYTES = 256 * 1024;
+    // Object headers and fields per row, on top of the string contents
+    private static final int ROW_OVERHEAD_BYTES = 64;
+    // Leave the pool to paging and writes when this much is already waiting
+    private static final int MAX_QUEUE_DEPTH_FOR_PREFETCH = 2;
+    // Well under SQLite's 999 bound parameters
+    private static final int RECHECK_CHUNK = 500;
+
+    private static TaskDetailCache instance;
+
+    private final TaskDao taskDao;
+    private final CommentDao commentDao;
+    private final LruCache<Integer, Entry> entries;
+    private final Set<Integer> inFlight = new HashSet<>();
+    // Bumped on every change, a prefetch that read before a change isn't stored
+    private int generation;
+    // Nothing is stored until the table observer is in place, or a change could go unseen
+    private boolean observing;
+
+    /**
+     * A task and its newest comments, as the detail screen's first page would load them.
+     */
+    public static class Entry {
+        private final Task task;
+        private final List<Comment> firstComments;
+        // task_activity as it was when the comments were read, 0 without comments
+        private final int commentCount;
+        private final long lastCommentAt;
+        private final int sizeBytes;
+
+        Entry(Task task, List<Comment> firstComments, int commentCount, long lastCommentAt) {
+            this.task = task;
+            this.firstComments = Collections.unmodifiableList(firstComments);
+            this.commentCount = commentCount;
+            this.lastCommentAt = lastCommentAt;
+            int size = ROW_OVERHEAD_BYTES + charBytes(task.getTitle()) + charBytes(task.getDescription());
+            for (Comment comment : firstComments) {
+                size += ROW_OVERHEAD_BYTES + charBytes(comment.getText()) + charBytes(comment.getUserFullName());
+            }
+            this.sizeBytes = size;
+        }
+
+        public Task getTask() {
+            return task;
+        }
+
+        public List<Comment> getFirstComments() {
+            return firstComments;
+        }
+
+        private static int charBytes(String value) {
+            return value != null ? value.length() * 2 : 0;
+        }
+    }
+
+    private TaskDetailCache(Context context) {
+        TaskDatabase database = TaskDatabase.getInstance(context);
+        taskDao = database.taskDao();
+        commentDao = database.commentDao();
+
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = activityManager.getMemoryClass();
+        int fraction = activityManager.isLowRamDevice() ? HEAP_FRACTION * 2 : HEAP_FRACTION;
+        int maxBytes = Math.max(MIN_SIZE_BYTES, memoryClassMb * 1024 * 1024 / fraction);
+        entries = new LruCache<Integer, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(Integer taskId, Entry entry) {
+                return entry.sizeBytes;
+            }
+        };
+
+        // Registering writes the tracker's triggers, so it happens on the read pool, not
+        // on the main thread that usually creates the cache
+        final InvalidationTracker tracker = database.getInvalidationTracker();
+        AppExecutors.getInstance().databaseRead().execute(new Runnable() {
+            @Override
+            public void run() {
+                tracker.addObserver(new InvalidationTracker.Observer("task_table", "comment_table") {
+                    @Override
+                    public void onInvalidated(@NonNull Set<String> tables) {
+                        recheck();
+                    }
+                });
+                synchronized (TaskDetailCache.this) {
+                    observing = true;
+                }
+            }
+        });
+    }
+
+    public static synchronized TaskDetailCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new TaskDetailCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public Entry get(int taskId) {
+        return entries.get(taskId);
+    }
+
+    // Loads the task in the background unless it is cached, loading, or the pool is busy
+    public void prefetch(final int taskId) {
+        final int startGeneration;
+        synchronized (this) {
+            if (!observing || entries.get(taskId) != null || inFlight.contains(taskId)
+                    || readQueueDepth() > MAX_QUEUE_DEPTH_FOR_PREFETCH) {
+                return;
+            }
+            inFlight.add(taskId);
+            startGeneration = generation;
+        }
+        try {
+            AppExecutors.getInstance().diskIO().execute(new Runnable() {
+                @Override
+                public void run() {
+                    load(taskId, startGeneration);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Only a guess at what the user opens next, dropping it costs nothing
+            synchronized (this) {
+                inFlight.remove(taskId);
+            }
+        }
+    }
+
+    private void load(int taskId, int startGeneration) {
+        try {
+            long start = QueryMetrics.now();
+            Task task = taskDao.findTaskById(taskId);
+            // Counters before comments: a comment written in between leaves them older than
+            // the page, which the next recheck catches
+            List<TaskActivity> activity = task != null
+                    ? taskDao.getActivityForTasks(Collections.singletonList(taskId))
+                    : Collections.<TaskActivity>emptyList();
+            List<Comment> comments = task != null
+                    ? commentDao.getFirstCommentPage(taskId, TaskRepository.COMMENT_INITIAL_LOAD_SIZE)
+                    : Collections.<Comment>emptyList();
+            QueryMetrics.getInstance().record("TaskDetailCache.prefetch", start, comments.size());
+            synchronized (this) {
+                if (task != null && generation == startGeneration) {
+                    entries.put(taskId, activity.isEmpty()
+                            ? new Entry(task, comments, 0, 0)
+                            : new Entry(task, comments, activity.get(0).getCommentCount(),
+                                    activity.get(0).getLastCommentAt()));
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error prefetching task " + taskId + ": " + e.getMessage(), e);
+        } finally {
+            synchronized (this) {
+                inFlight.remove(taskId);
+            }
+        }
+    }
+
+    /**
+     * Runs on Room's refresh thread after task_table or comment_table changed. Reads the
+     * cached tasks and their comment counters by primary key and drops the entries that
+     * differ; the rest stay cached.
+     */
+    private void recheck() {
+        List<Integer> taskIds;
+        synchronized (this) {
+            generation++;
+            taskIds = new ArrayList<>(entries.snapshot().keySet());
+        }
+        if (taskIds.isEmpty()) {
+            return;
+        }
+        long start = QueryMetrics.now();
+        Map<Integer, Task> tasks = new HashMap<>();
+        Map<Integer, TaskActivity> activity = new HashMap<>();
+        try {
+            for (int i = 0; i < taskIds.size(); i += RECHECK_CHUNK) {
+                List<Integer> chunk = taskIds.subList(i, Math.min(taskIds.size(), i + RECHECK_CHUNK));
+                for (Task task : taskDao.findTasksByIds(chunk)) {
+                    tasks.put(task.getId(), task);
+                }
+                for (TaskActivity row : taskDao.getActivityForTasks(chunk)) {
+                    activity.put(row.getTaskId(), row);
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error checking cached tasks: " + e.getMessage(), e);
+            evictAll();
+            return;
+        }
+        int evicted = 0;
+        synchronized (this) {
+            for (Integer taskId : taskIds) {
+                Entry entry = entries.get(taskId);
+                if (entry != null && !isCurrent(entry, tasks.get(taskId), activity.get(taskId))) {
+                    entries.remove(taskId);
+                    evicted++;
+                }
+            }
+        }
+        QueryMetrics.getInstance().record("TaskDetailCache.recheck", start, evicted);
+    }
+
+    private static boolean isCurrent(Entry entry, Task task, TaskActivity activity) {
+        if (task == null) {
+            return false;
+        }
+        int commentCount = activity != null ? activity.getCommentCount() : 0;
+        long lastCommentAt = activity != null ? activity.getLastCommentAt() : 0;
+        Task cached = entry.task;
+        return commentCount == entry.commentCount && lastCommentAt == entry.lastCommentAt
+                && cached.getPriority() == task.getPriority() && cached.isCompleted() == task.isCompleted()
+                && TextUtils.equals(cached.getTitle(), task.getTitle())
+                && TextUtils.equals(cached.getDescription(), task.getDescription());
+    }
+
+    // A rename rewrites comments without touching the counters, so entries showing the
+    // author's comments are dropped here instead
+    public synchronized void evictCommentsBy(int userId) {
+        generation++;
+        for (Map.Entry<Integer, Entry> cached : entries.snapshot().entrySet()) {
+            for (Comment comment : cached.getValue().firstComments) {
+                if (comment.getUserId() != null && comment.getUserId() == userId) {
+                    entries.remove(cached.getKey());
+                    break;
+                }
+            }
+        }
+    }
+
+    // For changes to everything at once, such as a restored backup
+    public synchronized void evictAll() {
+        generation++;
+        entries.evictAll();
+    }
+
+    private static int readQueueDepth() {
+        AppExecutors executors = AppExecutors.getInstance();
+        // Both entrances feed the same threads
+        return executors.diskIO().getQueueDepth() + executors.databaseRead().getQueueDepth();
+    }
+
+    // Called from the application's onTrimMemory: halve under light pressure, empty in the background
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            entries.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            entries.trimToSize(entries.maxSize() / 2);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.todoapp;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.paging.PagedList;
+
+/**
+ * State for one task's detail screen.
+ *
+ * Starts from whatever {@link TaskDetailCache} prefetched for the task, so the screen can
+ * show the task and its newest comments before the live queries return, and keeps
+ * following the database after that.
+ */
+public class TaskDetailViewModel extends AndroidViewModel {
+    private final TaskRepository repository;
+    private int taskId = -1;
+    private Task cachedTask;
+    private LiveData<Task> task;
+    private LiveData<PagedList<CommentItem>> comments;
+
+    public TaskDetailViewModel(@NonNull Application application) {
+        super(application);
+        repository = new TaskRepository(application);
+    }
+
+    // Called from onCreate; after a configuration change the existing queries are kept
+    public void setTaskId(int taskId) {
+        if (this.taskId == taskId) {
+            return;
+        }
+        this.taskId = taskId;
+        TaskDetailCache.Entry cached = TaskDetailCache.getInstance(getApplication()).get(taskId);
+        cachedTask = cached != null ? cached.getTask() : null;
+        task = repository.getTask(taskId);
+        comments = repository.getCommentsForTask(taskId, cached);
+    }
+
+    // The prefetched row, or null if the task wasn't prefetched
+    public Task getCachedTask() {
+        return cachedTask;
+    }
+
+    public LiveData<Task> getTask() {
+        return task;
+    }
+
+    public LiveData<PagedList<CommentItem>> getComments() {
+        return comments;
+    }
+
+    public void setCompleted(boolean completed) {
+        repository.setCompleted(taskId, completed);
+    }
+
+    public void insertComment(Comment comment) {
+        repository.insertComment(comment);
+    }
+}
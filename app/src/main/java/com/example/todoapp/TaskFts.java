@@ -0,0 +1,25 @@
+package com.example.todoapp;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+// Full-text index over task titles and descriptions, kept in sync with task_table by Room's triggers
+@Fts4(contentEntity = Task.class)
+@Entity(tableName = "task_fts")
+public class TaskFts {
+    private String title;
+    private String description;
+
+    public TaskFts(String title, String description) {
+        this.title = title;
+        this.description = description;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,777 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Imports tasks and their comments from a JSON or CSV file.
+ *
+ * The file is parsed one task at a time and written in transactions of
+ * {@link #getBatchSize()} tasks, so neither the file nor the whole import is ever
+ * held in memory. After each committed batch the number of source tasks consumed is
+ * saved, and importing the same file again continues from there.
+ *
+ * JSON is an array of task objects (or {"tasks": [...]}) with title, description,
+ * priority, completed and a comments array of {text, author, timestamp}.
+ * CSV has a header row naming the columns title, description, priority, completed,
+ * comment, author and timestamp; a row without a title adds a comment to the task above.
+ */
+public class TaskImporter {
+    private static final String TAG = "TaskImporter";
+    private static final String PREF_NAME = "TodoAppImport";
+
+    static final int DEFAULT_BATCH_SIZE = 500;
+    // A batch is also committed early once it holds this many comments per task slot
+    private static final int COMMENTS_PER_TASK_IN_BATCH = 10;
+    private static final int MAX_TITLE_LENGTH = 200;
+    private static final int MAX_ERRORS_KEPT = 20;
+    private static final String DEFAULT_AUTHOR = "Imported";
+
+    /**
+     * Snapshot of a running or finished import.
+     */
+    public static class Progress {
+        public enum State { RUNNING, DONE, CANCELLED, FAILED }
+
+        private final State state;
+        private final int tasksImported;
+        private final int commentsImported;
+        private final int rowsSkipped;
+        private final int resumedFrom;
+        private final long bytesRead;
+        private final long totalBytes;
+        private final List<String> errors;
+
+        Progress(State state, int tasksImported, int commentsImported, int rowsSkipped,
+                 int resumedFrom, long bytesRead, long totalBytes, List<String> errors) {
+            this.state = state;
+            this.tasksImported = tasksImported;
+            this.commentsImported = commentsImported;
+            this.rowsSkipped = rowsSkipped;
+            this.resumedFrom = resumedFrom;
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.errors = errors;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public boolean isFinished() {
+            return state != State.RUNNING;
+        }
+
+        public int getTasksImported() {
+            return tasksImported;
+        }
+
+        public int getCommentsImported() {
+            return commentsImported;
+        }
+
+        public int getRowsSkipped() {
+            return rowsSkipped;
+        }
+
+        // Source tasks that an earlier, interrupted run had already imported
+        public int getResumedFrom() {
+            return resumedFrom;
+        }
+
+        // 0-100, or -1 when the file size is unknown
+        public int getPercent() {
+            if (totalBytes <= 0) {
+                return -1;
+            }
+            return (int) Math.min(100, bytesRead * 100 / totalBytes);
+        }
+
+        // The first few validation errors, for showing to the user
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+
+    private final Context context;
+    private final TaskDatabase database;
+    private final TaskDao taskDao;
+    private final CommentDao commentDao;
+    private final SharedPreferences checkpoints;
+    private final int batchSize;
+    private final MutableLiveData<Progress> progress = new MutableLiveData<>();
+
+    private volatile boolean running;
+    private volatile boolean cancelled;
+
+    public TaskImporter(Context context) {
+        this(context, DEFAULT_BATCH_SIZE);
+    }
+
+    public TaskImporter(Context context, int batchSize) {
+        this(context, TaskDatabase.getInstance(context.getApplicationContext()), batchSize);
+    }
+
+    @VisibleForTesting
+    TaskImporter(Context context, TaskDatabase database, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.context = context.getApplicationContext();
+        this.database = database;
+        this.taskDao = database.taskDao();
+        this.commentDao = database.commentDao();
+        this.checkpoints = this.context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public LiveData<Progress> getProgress() {
+        return progress;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts importing the file on the IO pool. Returns false if an import is already running
+     * or the pool is too busy to take it.
+     */
+    public synchronized boolean start(final Uri uri) {
+        if (running) {
+            return false;
+        }
+        running = true;
+        cancelled = false;
+        try {
+            AppExecutors.getInstance().diskIO().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        importFrom(uri);
+                    } finally {
+                        running = false;
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Cannot start import: " + e.getMessage(), e);
+            running = false;
+            return false;
+        }
+        return true;
+    }
+
+    // Stops after the current batch; the checkpoint is kept so the import can be resumed
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void importFrom(Uri uri) {
+        long totalBytes = querySize(uri);
+        String checkpointKey = uri.toString() + "#" + totalBytes;
+        Run run = new Run(checkpoints.getInt(checkpointKey, 0), totalBytes);
+        InputStream input = null;
+        try {
+            input = context.getContentResolver().openInputStream(uri);
+            if (input == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            run.counter = new CountingInputStream(new BufferedInputStream(input));
+            RecordReader reader = openReader(run.counter);
+            if (run.resumedFrom > 0) {
+                Log.d(TAG, "Resuming import after " + run.resumedFrom + " tasks");
+            }
+
+            int recordIndex = 0;
+            Record record;
+            while (!cancelled && (record = reader.next()) != null) {
+                recordIndex++;
+                if (recordIndex <= run.resumedFrom) {
+                    // Committed by an earlier run
+                    continue;
+                }
+                if (record.error != null) {
+                    run.skip("Task " + recordIndex + ": " + record.error);
+                } else {
+                    run.add(record);
+                }
+                run.recordsConsumed = recordIndex;
+                if (run.tasks.size() >= batchSize
+                        || run.commentCount >= batchSize * COMMENTS_PER_TASK_IN_BATCH) {
+                    commit(run, checkpointKey);
+                }
+            }
+            commit(run, checkpointKey);
+
+            if (cancelled) {
+                publish(run, Progress.State.CANCELLED);
+            } else {
+                checkpoints.edit().remove(checkpointKey).commit();
+                publish(run, Progress.State.DONE);
+            }
+            Log.d(TAG, "Import finished: " + run.tasksImported + " tasks, "
+                    + run.commentsImported + " comments, " + run.rowsSkipped + " skipped");
+        } catch (Exception e) {
+            // Whatever was committed stays, and the next run continues after it
+            Log.e(TAG, "Error importing tasks: " + e.getMessage(), e);
+            run.error(e.getMessage());
+            publish(run, Progress.State.FAILED);
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Error closing import file: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    // Writes the pending tasks and their comments in one transaction on the writer thread,
+    // then moves the checkpoint. Parsing stays on the IO pool.
+    private void commit(final Run run, String checkpointKey) {
+        if (run.tasks.isEmpty() && run.recordsConsumed == run.recordsCommitted) {
+            return;
+        }
+        final List<Task> tasks = run.tasks;
+        final List<List<Comment>> comments = run.comments;
+        final int[] insertedComments = new int[1];
+        if (!tasks.isEmpty()) {
+            long start = QueryMetrics.now();
+            database.runOnWriter(new Runnable() {
+                @Override
+                public void run() {
+                    List<Long> ids = taskDao.insertAll(tasks);
+                    List<Comment> batchComments = new ArrayList<>();
+                    for (int i = 0; i < ids.size(); i++) {
+                        int taskId = (int) (long) ids.get(i);
+                        for (Comment comment : comments.get(i)) {
+                            comment.setTaskId(taskId);
+                            batchComments.add(comment);
+                        }
+                    }
+                    if (!batchComments.isEmpty()) {
+                        commentDao.insertAll(batchComments);
+                    }
+                    insertedComments[0] = batchComments.size();
+                }
+            });
+            QueryMetrics.getInstance().record("TaskImporter.commit", start, tasks.size());
+        }
+
+        // Saved right after the commit; a crash in between re-imports at most this one batch
+        checkpoints.edit().putInt(checkpointKey, run.recordsConsumed).commit();
+        run.recordsCommitted = run.recordsConsumed;
+        run.tasksImported += tasks.size();
+        run.commentsImported += insertedComments[0];
+        run.tasks = new ArrayList<>(batchSize);
+        run.comments = new ArrayList<>(batchSize);
+        run.commentCount = 0;
+        publish(run, Progress.State.RUNNING);
+    }
+
+    private void publish(Run run, Progress.State state) {
+        progress.postValue(new Progress(state, run.tasksImported, run.commentsImported,
+                run.rowsSkipped, run.resumedFrom, run.counter != null ? run.counter.count : 0,
+                run.totalBytes, new ArrayList<>(run.errors)));
+    }
+
+    private long querySize(Uri uri) {
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(uri,
+                    new String[]{OpenableColumns.SIZE}, null, null, null);
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading import file size: " + e.getMessage(), e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return -1;
+    }
+
+    // JSON files start with '[' or '{', anything else is read as CSV
+    private static RecordReader openReader(InputStream input) throws IOException {
+        // Drop a UTF-8 byte order mark, JsonReader doesn't accept one
+        input.mark(3);
+        if (input.read() != 0xEF || input.read() != 0xBB || input.read() != 0xBF) {
+            input.reset();
+        }
+        input.mark(1024);
+        int c;
+        do {
+            c = input.read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        input.reset();
+        Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+        if (c == '[' || c == '{') {
+            return new JsonRecordReader(reader);
+        }
+        return new CsvRecordReader(reader);
+    }
+
+    // State of one import run
+    private static class Run {
+        final int resumedFrom;
+        final long totalBytes;
+        CountingInputStream counter;
+        List<Task> tasks = new ArrayList<>();
+        List<List<Comment>> comments = new ArrayList<>();
+        int commentCount;
+        int recordsConsumed;
+        int recordsCommitted;
+        int tasksImported;
+        int commentsImported;
+        int rowsSkipped;
+        final List<String> errors = new ArrayList<>();
+
+        Run(int resumedFrom, long totalBytes) {
+            this.resumedFrom = resumedFrom;
+            this.totalBytes = totalBytes;
+            this.recordsConsumed = resumedFrom;
+            this.recordsCommitted = resumedFrom;
+        }
+
+        void add(Record record) {
+            tasks.add(record.task);
+            comments.add(record.comments);
+            commentCount += record.comments.size();
+        }
+
+        void skip(String message) {
+            rowsSkipped++;
+            error(message);
+        }
+
+        void error(String message) {
+            if (errors.size() < MAX_ERRORS_KEPT) {
+                errors.add(message);
+            }
+        }
+    }
+
+    // One source task with its comments, or the reason it was rejected
+    private static class Record {
+        final Task task;
+        final List<Comment> comments;
+        final String error;
+
+        Record(Task task, List<Comment> comments, String error) {
+            this.task = task;
+            this.comments = comments;
+            this.error = error;
+        }
+    }
+
+    // Raw fields of one task as read from the file, validated by build()
+    private static class RecordBuilder {
+        String title;
+        String description;
+        String priority;
+        String completed;
+        final List<Comment> comments = new ArrayList<>();
+        String error;
+
+        void addComment(String text, String author, String timestamp) {
+            if (TextUtils.isEmpty(text) || text.trim().isEmpty()) {
+                if (error == null) {
+                    error = "comment without text";
+                }
+                return;
+            }
+            Comment comment = new Comment(0, null,
+                    TextUtils.isEmpty(author) ? DEFAULT_AUTHOR : author.trim(), text.trim());
+            if (!TextUtils.isEmpty(timestamp)) {
+                try {
+                    comment.setTimestamp(Long.parseLong(timestamp.trim()));
+                } catch (NumberFormatException e) {
+                    if (error == null) {
+                        error = "invalid comment timestamp \"" + timestamp + "\"";
+                    }
+                    return;
+                }
+            }
+            comments.add(comment);
+        }
+
+        Record build() {
+            if (error != null) {
+                return new Record(null, null, error);
+            }
+            String cleanTitle = title == null ? "" : title.trim();
+            if (cleanTitle.isEmpty()) {
+                return new Record(null, null, "missing title");
+            }
+            if (cleanTitle.length() > MAX_TITLE_LENGTH) {
+                return new Record(null, null, "title longer than " + MAX_TITLE_LENGTH + " characters");
+            }
+            int parsedPriority = parsePriority(priority);
+            if (parsedPriority == 0) {
+                return new Record(null, null, "invalid priority \"" + priority + "\"");
+            }
+            Task task = new Task(cleanTitle, description == null ? "" : description.trim(), parsedPriority);
+            task.setCompleted(parseBoolean(completed));
+            return new Record(task, comments, null);
+        }
+
+        // Accepts 1-3 or low/medium/high, missing means medium
+        private static int parsePriority(String value) {
+            if (TextUtils.isEmpty(value)) {
+                return 2;
+            }
+            switch (value.trim().toLowerCase(Locale.US)) {
+                case "1":
+                case "low":
+                    return 1;
+                case "2":
+                case "medium":
+                    return 2;
+                case "3":
+                case "high":
+                    return 3;
+                default:
+                    return 0;
+            }
+        }
+
+        private static boolean parseBoolean(String value) {
+            if (value == null) {
+                return false;
+            }
+            String v = value.trim().toLowerCase(Locale.US);
+            return v.equals("true") || v.equals("1") || v.equals("yes") || v.equals("done");
+        }
+    }
+
+    private interface RecordReader {
+        // The next source task, or null at the end of the file
+        Record next() throws IOException;
+    }
+
+    private static class JsonRecordReader implements RecordReader {
+        private final JsonReader reader;
+        private boolean started;
+
+        JsonRecordReader(Reader input) {
+            reader = new JsonReader(input);
+            reader.setLenient(true);
+        }
+
+        @Override
+        public Record next() throws IOException {
+            if (!started) {
+                started = true;
+                openTaskArray();
+            }
+            if (!reader.hasNext()) {
+                return null;
+            }
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                return new Record(null, null, "not an object");
+            }
+            RecordBuilder builder = new RecordBuilder();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                    case "title":
+                        builder.title = nextString();
+                        break;
+                    case "description":
+                        builder.description = nextString();
+                        break;
+                    case "priority":
+                        builder.priority = nextString();
+                        break;
+                    case "completed":
+                    case "isCompleted":
+                        builder.completed = nextString();
+                        break;
+                    case "comments":
+                        readComments(builder);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            return builder.build();
+        }
+
+        // Positions the reader inside the task array, either top level or under "tasks"
+        private void openTaskArray() throws IOException {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                return;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("tasks") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    return;
+                }
+                reader.skipValue();
+            }
+            throw new IOException("No \"tasks\" array in JSON file");
+        }
+
+        private void readComments(RecordBuilder builder) throws IOException {
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                reader.skipValue();
+                builder.error = "comments is not an array";
+                return;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    builder.error = "comment is not an object";
+                    continue;
+                }
+                String text = null;
+                String author = null;
+                String timestamp = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (name.equals("text")) {
+                        text = nextString();
+                    } else if (name.equals("author") || name.equals("userFullName")) {
+                        author = nextString();
+                    } else if (name.equals("timestamp")) {
+                        timestamp = nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                builder.addComment(text, author, timestamp);
+            }
+            reader.endArray();
+        }
+
+        // Numbers and booleans are read as text and validated in RecordBuilder
+        private String nextString() throws IOException {
+            JsonToken token = reader.peek();
+            if (token == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            } else if (token == JsonToken.BOOLEAN) {
+                return String.valueOf(reader.nextBoolean());
+            } else if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+                return reader.nextString();
+            }
+            reader.skipValue();
+            return null;
+        }
+    }
+
+    private static class CsvRecordReader implements RecordReader {
+        private final BufferedReader reader;
+        private Map<String, Integer> columns;
+        private List<String> pendingRow;
+        private boolean endOfFile;
+
+        CsvRecordReader(Reader input) {
+            reader = new BufferedReader(input);
+        }
+
+        @Override
+        public Record next() throws IOException {
+            if (columns == null) {
+                readHeader();
+            }
+            List<String> row = pendingRow != null ? pendingRow : readRow();
+            pendingRow = null;
+            while (row != null && isBlank(row)) {
+                row = readRow();
+            }
+            if (row == null) {
+                return null;
+            }
+
+            RecordBuilder builder = new RecordBuilder();
+            builder.title = field(row, "title");
+            builder.description = field(row, "description");
+            builder.priority = field(row, "priority");
+            builder.completed = field(row, "completed");
+            addComment(builder, row);
+
+            // Following rows without a title are comments on this task
+            while ((row = readRow()) != null) {
+                if (isBlank(row)) {
+                    continue;
+                }
+                if (!TextUtils.isEmpty(field(row, "title"))) {
+                    pendingRow = row;
+                    break;
+                }
+                addComment(builder, row);
+            }
+            return builder.build();
+        }
+
+        private void readHeader() throws IOException {
+            List<String> header = readRow();
+            if (header == null) {
+                throw new IOException("CSV file is empty");
+            }
+            columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(Locale.US), i);
+            }
+            if (!columns.containsKey("title")) {
+                throw new IOException("CSV header has no title column");
+            }
+        }
+
+        private void addComment(RecordBuilder builder, List<String> row) {
+            String text = field(row, "comment");
+            if (!TextUtils.isEmpty(text)) {
+                builder.addComment(text, field(row, "author"), field(row, "timestamp"));
+            }
+        }
+
+        private String field(List<String> row, String column) {
+            Integer index = columns.get(column);
+            return index == null || index >= row.size() ? null : row.get(index);
+        }
+
+        private static boolean isBlank(List<String> row) {
+            for (String value : row) {
+                if (!value.trim().isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // RFC 4180: quoted fields may contain commas, doubled quotes and line breaks
+        private List<String> readRow() throws IOException {
+            if (endOfFile) {
+                return null;
+            }
+            List<String> row = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                any = true;
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    row.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    row.add(field.toString());
+                    return row;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+            endOfFile = true;
+            if (!any) {
+                return null;
+            }
+            row.add(field.toString());
+            return row;
+        }
+    }
+
+    // Counts bytes read from the file for progress reporting
+    private static class CountingInputStream extends FilterInputStream {
+        volatile long count;
+        private long markedCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            super.mark(readLimit);
+            markedCount = count;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            super.reset();
+            count = markedCount;
+        }
+    }
+}
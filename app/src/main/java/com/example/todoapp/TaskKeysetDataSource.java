@@ -0,0 +1,127 @@
+package com.example.todoapp;
+
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.paging.ItemKeyedDataSource;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pages task summaries from task_table by key instead of by offset.
+ *
+ * Each page continues from the last loaded row's (priority, id) or (title, id),
+ * so a page costs an index seek no matter how deep the user has scrolled.
+ * The source invalidates itself when task_table or the comment counters change.
+ */
+public class TaskKeysetDataSource extends ItemKeyedDataSource<TaskSummary, TaskSummary> {
+
+    private final TaskDao taskDao;
+    private final TaskQuery.SortOrder sortOrder;
+    private final boolean showCompleted;
+
+    public TaskKeysetDataSource(TaskDatabase database, TaskQuery query) {
+        this.taskDao = database.taskDao();
+        this.sortOrder = query.getSortOrder();
+        this.showCompleted = query.isShowCompleted();
+        WeakInvalidationObserver.register(database.getInvalidationTracker(), this, "task_table", "task_activity");
+    }
+
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams<TaskSummary> params,
+                            @NonNull LoadInitialCallback<TaskSummary> callback) {
+        TaskSummary key = params.requestedInitialKey;
+        long start = QueryMetrics.now();
+        List<TaskSummary> tasks;
+        if (key == null) {
+            tasks = sortOrder == TaskQuery.SortOrder.PRIORITY
+                    ? taskDao.getFirstPageByPriority(showCompleted, params.requestedLoadSize)
+                    : taskDao.getFirstPageAlphabetically(showCompleted, params.requestedLoadSize);
+        } else {
+            // Reload a window around the previous list's position: up to half the load
+            // before the key row, then the key row itself and what follows it, so rows
+            // already on screen keep their place instead of being loaded again above it
+            tasks = pageBefore(key, key.getId(), params.requestedLoadSize / 2);
+            Collections.reverse(tasks);
+            int keyAndAfter = params.requestedLoadSize - tasks.size();
+            tasks.addAll(sortOrder == TaskQuery.SortOrder.PRIORITY
+                    ? pageAfter(key, key.getId() + 1, keyAndAfter)
+                    : pageAfter(key, key.getId() - 1, keyAndAfter));
+        }
+        QueryMetrics.getInstance().record("TaskDao.loadInitial." + sortOrder, start, tasks.size());
+        callback.onResult(tasks);
+    }
+
+    @Override
+    public void loadAfter(@NonNull LoadParams<TaskSummary> params, @NonNull LoadCallback<TaskSummary> callback) {
+        long start = QueryMetrics.now();
+        List<TaskSummary> tasks = pageAfter(params.key, params.key.getId(), params.requestedLoadSize);
+        QueryMetrics.getInstance().record("TaskDao.loadAfter." + sortOrder, start, tasks.size());
+        callback.onResult(tasks);
+    }
+
+    @Override
+    public void loadBefore(@NonNull LoadParams<TaskSummary> params, @NonNull LoadCallback<TaskSummary> callback) {
+        long start = QueryMetrics.now();
+        List<TaskSummary> tasks = pageBefore(params.key, params.key.getId(), params.requestedLoadSize);
+        QueryMetrics.getInstance().record("TaskDao.loadBefore." + sortOrder, start, tasks.size());
+        // The query walks away from the key, the list expects display order
+        Collections.reverse(tasks);
+        callback.onResult(tasks);
+    }
+
+    // Rows after the key's sort position, in display order
+    private List<TaskSummary> pageAfter(TaskSummary key, int id, int limit) {
+        if (sortOrder == TaskQuery.SortOrder.PRIORITY) {
+            return taskDao.getPageByPriorityAfter(key.getPriority(), id, showCompleted, limit);
+        }
+        if (key.getTitle() != null) {
+            return taskDao.getPageAlphabeticallyAfter(key.getTitle(), id, showCompleted, limit);
+        }
+        // Untitled tasks sort first; after them the titled ones follow from the smallest title
+        List<TaskSummary> tasks = taskDao.getUntitledPageAfter(id, showCompleted, limit);
+        if (tasks.size() < limit) {
+            tasks.addAll(taskDao.getPageAlphabeticallyAfter("", Integer.MIN_VALUE,
+                    showCompleted, limit - tasks.size()));
+        }
+        return tasks;
+    }
+
+    // Rows before the key's sort position, closest to the key first
+    private List<TaskSummary> pageBefore(TaskSummary key, int id, int limit) {
+        if (sortOrder == TaskQuery.SortOrder.PRIORITY) {
+            return taskDao.getPageByPriorityBefore(key.getPriority(), id, showCompleted, limit);
+        }
+        if (key.getTitle() == null) {
+            return taskDao.getUntitledPageBefore(id, showCompleted, limit);
+        }
+        List<TaskSummary> tasks = taskDao.getPageAlphabeticallyBefore(key.getTitle(), id, showCompleted, limit);
+        // The range seek on title never matches NULL, the untitled tasks come last going backwards
+        if (tasks.size() < limit) {
+            tasks.addAll(taskDao.getUntitledPageBefore(Integer.MAX_VALUE, showCompleted, limit - tasks.size()));
+        }
+        return tasks;
+    }
+
+    @NonNull
+    @Override
+    public TaskSummary getKey(@NonNull TaskSummary item) {
+        return item;
+    }
+
+    public static class Factory extends DataSource.Factory<TaskSummary, TaskSummary> {
+        private final TaskDatabase database;
+        private final TaskQuery query;
+
+        public Factory(TaskDatabase database, TaskQuery query) {
+            this.database = database;
+            this.query = query;
+        }
+
+        @NonNull
+        @Override
+        public DataSource<TaskSummary, TaskSummary> create() {
+            return new TaskKeysetDataSource(database, query);
+        }
+    }
+}
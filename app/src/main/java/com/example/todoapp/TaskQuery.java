@@ -0,0 +1,60 @@
+package com.example.todoapp;
+
+/**
+ * Immutable description of what the task list shows: sort order and filters.
+ * TaskViewModel switches the single live task query whenever this changes.
+ */
+public final class TaskQuery {
+
+    public enum SortOrder {
+        PRIORITY, ALPHABETICAL
+    }
+
+    public static final TaskQuery DEFAULT = new TaskQuery(SortOrder.PRIORITY, true);
+
+    private final SortOrder sortOrder;
+    private final boolean showCompleted;
+
+    public TaskQuery(SortOrder sortOrder, boolean showCompleted) {
+        this.sortOrder = sortOrder;
+        this.showCompleted = showCompleted;
+    }
+
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    public boolean isShowCompleted() {
+        return showCompleted;
+    }
+
+    public TaskQuery withSortOrder(SortOrder sortOrder) {
+        return new TaskQuery(sortOrder, showCompleted);
+    }
+
+    public TaskQuery withShowCompleted(boolean showCompleted) {
+        return new TaskQuery(sortOrder, showCompleted);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TaskQuery)) {
+            return false;
+        }
+        TaskQuery other = (TaskQuery) o;
+        return sortOrder == other.sortOrder && showCompleted == other.showCompleted;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sortOrder.hashCode() + (showCompleted ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskQuery{sortOrder=" + sortOrder + ", showCompleted=" + showCompleted + "}";
+    }
+}
@@ -1,129 +1,175 @@
 package com.example.todoapp;
 
 import android.app.Application;
-import android.os.AsyncTask;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.Transformations;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
 
 import java.util.List;
+import java.util.concurrent.Callable;
 
 public class TaskRepository {
+    private static final int PAGE_SIZE = 30;
+    private static final int COMMENT_PAGE_SIZE = 20;
+    // Rows in the first comment load, also what TaskDetailCache prefetches
+    static final int COMMENT_INITIAL_LOAD_SIZE = COMMENT_PAGE_SIZE * 2;
+
+    private TaskDatabase database;
     private TaskDao taskDao;
     private CommentDao commentDao;
-    private LiveData<List<Task>> allTasks;
-    private LiveData<List<Task>> allTasksAlphabetically;
+    private TaskWriteQueue writeQueue;
 
     public TaskRepository(Application application) {
-        TaskDatabase database = TaskDatabase.getInstance(application);
+        database = TaskDatabase.getInstance(application);
         taskDao = database.taskDao();
-        commentDao = database.commentDao(); // Add this line
-        allTasks = taskDao.getAllTasks();
-        allTasksAlphabetically = taskDao.getAllTasksAlphabetically();
+        commentDao = database.commentDao();
+        writeQueue = TaskWriteQueue.getInstance(database);
     }
 
-    // Task operations
-    public void insert(Task task) {
-        new InsertTaskAsyncTask(taskDao).execute(task);
+    // Its own write queue, so the shared one stays bound to the app's database
+    @VisibleForTesting
+    TaskRepository(TaskDatabase database) {
+        this.database = database;
+        taskDao = database.taskDao();
+        commentDao = database.commentDao();
+        writeQueue = new TaskWriteQueue(database);
     }
 
-    public void update(Task task) {
-        new UpdateTaskAsyncTask(taskDao).execute(task);
+    // A new paged task query for the given sort order and filters
+    public LiveData<PagedList<TaskSummary>> getTasks(TaskQuery query) {
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(PAGE_SIZE)
+                .setInitialLoadSizeHint(PAGE_SIZE * 2)
+                .setPrefetchDistance(PAGE_SIZE)
+                .setEnablePlaceholders(false)
+                .build();
+        return new LivePagedListBuilder<>(new TaskKeysetDataSource.Factory(database, query), config)
+                .setFetchExecutor(AppExecutors.getInstance().databaseRead())
+                .build();
     }
 
-    public void delete(Task task) {
-        new DeleteTaskAsyncTask(taskDao).execute(task);
+    // Task operations - writes are coalesced by the write queue
+    public void insert(Task task) {
+        insert(task, null);
     }
 
-    public void deleteCompletedTasks() {
-        new DeleteCompletedTasksAsyncTask(taskDao).execute();
+    public void insert(Task task, TaskWriteQueue.WriteCallback callback) {
+        writeQueue.insertTask(task, callback);
     }
 
-    public LiveData<List<Task>> getAllTasks() {
-        return allTasks;
+    public void update(Task task) {
+        update(task, null);
     }
 
-    public LiveData<List<Task>> getAllTasksAlphabetically() {
-        return allTasksAlphabetically;
+    public void update(Task task, TaskWriteQueue.WriteCallback callback) {
+        writeQueue.updateTask(task, callback);
     }
 
-    // Comment operations
-    public void insertComment(Comment comment) {
-        new InsertCommentAsyncTask(commentDao).execute(comment);
+    public void delete(int taskId) {
+        delete(taskId, null);
     }
 
-    public LiveData<List<Comment>> getCommentsForTask(int taskId) {
-        return commentDao.getCommentsForTask(taskId);
+    public void delete(int taskId, TaskWriteQueue.WriteCallback callback) {
+        writeQueue.deleteTask(taskId, callback);
     }
 
-    // AsyncTask classes for tasks
-    private static class InsertTaskAsyncTask extends AsyncTask<Task, Void, Void> {
-        private TaskDao taskDao;
-
-        private InsertTaskAsyncTask(TaskDao taskDao) {
-            this.taskDao = taskDao;
-        }
-
-        @Override
-        protected Void doInBackground(Task... tasks) {
-            taskDao.insert(tasks[0]);
-            return null;
-        }
+    // Field-level updates, prefer these over update(Task) which rewrites every column
+    public void setCompleted(int taskId, boolean completed) {
+        writeQueue.setCompleted(taskId, completed, null);
     }
 
-    private static class UpdateTaskAsyncTask extends AsyncTask<Task, Void, Void> {
-        private TaskDao taskDao;
-
-        private UpdateTaskAsyncTask(TaskDao taskDao) {
-            this.taskDao = taskDao;
-        }
-
-        @Override
-        protected Void doInBackground(Task... tasks) {
-            taskDao.update(tasks[0]);
-            return null;
+    public void setCompleted(List<Integer> taskIds, boolean completed) {
+        for (int taskId : taskIds) {
+            writeQueue.setCompleted(taskId, completed, null);
         }
     }
 
-    private static class DeleteTaskAsyncTask extends AsyncTask<Task, Void, Void> {
-        private TaskDao taskDao;
+    public void setPriority(int taskId, int priority) {
+        writeQueue.setPriority(taskId, priority, null);
+    }
 
-        private DeleteTaskAsyncTask(TaskDao taskDao) {
-            this.taskDao = taskDao;
-        }
+    public void deleteCompletedTasks() {
+        writeQueue.deleteCompletedTasks(null);
+    }
 
-        @Override
-        protected Void doInBackground(Task... tasks) {
-            taskDao.delete(tasks[0]);
-            return null;
-        }
+    // Emits only when one of the counts actually changes
+    public LiveData<TaskStats> getTaskStats() {
+        return Transformations.distinctUntilChanged(new TimedQueryLiveData<>(database,
+                "TaskDao.getTaskStats", new Callable<TaskStats>() {
+                    @Override
+                    public TaskStats call() {
+                        return taskDao.getTaskStats();
+                    }
+                }, "task_table"));
     }
 
-    private static class DeleteCompletedTasksAsyncTask extends AsyncTask<Void, Void, Void> {
-        private TaskDao taskDao;
+    // Full task row, loaded only for the detail screen
+    public LiveData<Task> getTask(final int taskId) {
+        return new TimedQueryLiveData<>(database, "TaskDao.findTaskById", new Callable<Task>() {
+            @Override
+            public Task call() {
+                return taskDao.findTaskById(taskId);
+            }
+        }, "task_table");
+    }
 
-        private DeleteCompletedTasksAsyncTask(TaskDao taskDao) {
-            this.taskDao = taskDao;
-        }
+    // Comment operations
+    public void insertComment(Comment comment) {
+        insertComment(comment, null);
+    }
 
-        @Override
-        protected Void doInBackground(Void... voids) {
-            taskDao.deleteCompletedTasks();
-            return null;
-        }
+    public void insertComment(Comment comment, TaskWriteQueue.WriteCallback callback) {
+        writeQueue.insertComment(comment, callback);
     }
 
-    // AsyncTask class for comments
-    private static class InsertCommentAsyncTask extends AsyncTask<Comment, Void, Void> {
-        private CommentDao commentDao;
+    // Newest-first comment pages, the next page is prefetched while scrolling.
+    // Rows are turned into display models on the fetch thread, not while binding.
+    public LiveData<PagedList<CommentItem>> getCommentsForTask(int taskId) {
+        return new LivePagedListBuilder<>(
+                new CommentKeysetDataSource.Factory(database, taskId).map(CommentItem::new), commentPageConfig())
+                .setFetchExecutor(AppExecutors.getInstance().databaseRead())
+                .build();
+    }
 
-        private InsertCommentAsyncTask(CommentDao commentDao) {
-            this.commentDao = commentDao;
+    /**
+     * Comments for the detail screen, starting from a prefetched page when there is one.
+     * The first list is then built right here on the main thread from memory, so the
+     * screen's first frame has comments; the live query replaces it once it loads.
+     */
+    public LiveData<PagedList<CommentItem>> getCommentsForTask(int taskId, TaskDetailCache.Entry cached) {
+        LiveData<PagedList<CommentItem>> live = getCommentsForTask(taskId);
+        if (cached == null) {
+            return live;
         }
+        PagedList<CommentItem> seed = new PagedList.Builder<>(
+                new CommentKeysetDataSource(database, taskId, cached.getFirstComments()).map(CommentItem::new),
+                commentPageConfig())
+                .setNotifyExecutor(AppExecutors.getInstance().mainThread())
+                .setFetchExecutor(AppExecutors.getInstance().databaseRead())
+                .build();
+        final MediatorLiveData<PagedList<CommentItem>> comments = new MediatorLiveData<>();
+        comments.setValue(seed);
+        comments.addSource(live, new Observer<PagedList<CommentItem>>() {
+            @Override
+            public void onChanged(PagedList<CommentItem> list) {
+                // The seed has no table observer of its own, dropping it is all it needs
+                comments.setValue(list);
+            }
+        });
+        return comments;
+    }
 
-        @Override
-        protected Void doInBackground(Comment... comments) {
-            commentDao.insert(comments[0]);
-            return null;
-        }
+    private static PagedList.Config commentPageConfig() {
+        return new PagedList.Config.Builder()
+                .setPageSize(COMMENT_PAGE_SIZE)
+                .setInitialLoadSizeHint(COMMENT_INITIAL_LOAD_SIZE)
+                .setPrefetchDistance(COMMENT_PAGE_SIZE)
+                .setEnablePlaceholders(false)
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,215 @@
+package com.example.todoapp;
+
+import androidx.room.Ignore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One task matched by a full-text search, with a highlighted snippet of the matching text.
+ *
+ * Android's SQLite has no ranking function and apps can't register one, so a search runs
+ * in two steps: every match's matchinfo('pcx') blob is read as a {@link Hit} and scored
+ * here, then snippets are built only for the best hit of each of the top tasks.
+ */
+public class TaskSearchResult {
+    static final String HIGHLIGHT_START = "<b>";
+    static final String HIGHLIGHT_END = "</b>";
+
+    // Column weights: a hit in a title counts more than one in a description or comment
+    private static final double[] TASK_COLUMN_WEIGHTS = {2.0, 1.0};
+    private static final double[] COMMENT_COLUMN_WEIGHTS = {0.5};
+
+    private int id;
+    private String title;
+    private int priority;
+    private boolean isCompleted;
+    private String snippet;
+
+    @Ignore
+    private double score;
+
+    public TaskSearchResult(int id, String title, int priority, boolean isCompleted, String snippet) {
+        this.id = id;
+        this.title = title;
+        this.priority = priority;
+        this.isCompleted = isCompleted;
+        this.snippet = snippet;
+    }
+
+    /**
+     * One FTS match before ranking: the matched row, the task it belongs to and its matchinfo.
+     */
+    public static class Hit {
+        private final int rowId;
+        private final int taskId;
+        private final boolean fromComment;
+        private final byte[] matchInfo;
+        @Ignore
+        private double score;
+
+        public Hit(int rowId, int taskId, boolean fromComment, byte[] matchInfo) {
+            this.rowId = rowId;
+            this.taskId = taskId;
+            this.fromComment = fromComment;
+            this.matchInfo = matchInfo;
+        }
+
+        public int getRowId() {
+            return rowId;
+        }
+
+        public int getTaskId() {
+            return taskId;
+        }
+
+        public boolean isFromComment() {
+            return fromComment;
+        }
+
+        public byte[] getMatchInfo() {
+            return matchInfo;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public boolean isCompleted() {
+        return isCompleted;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Turns free text into an FTS4 MATCH expression: every word becomes a prefix term
+     * and the terms are AND-ed. Returns null when nothing searchable is left.
+     */
+    static String toMatchQuery(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(word).append('*');
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * Scores every task and comment hit, keeps the best hit per task and returns the
+     * top {@code limit} tasks' hits by score. A task's other hits add to its score.
+     */
+    static List<Hit> rank(List<Hit> taskHits, List<Hit> commentHits, int limit) {
+        Map<Integer, Hit> best = new HashMap<>();
+        for (Hit hit : taskHits) {
+            hit.score = score(hit.matchInfo, TASK_COLUMN_WEIGHTS);
+            best.put(hit.taskId, hit);
+        }
+        for (Hit hit : commentHits) {
+            hit.score = score(hit.matchInfo, COMMENT_COLUMN_WEIGHTS);
+            Hit existing = best.get(hit.taskId);
+            if (existing == null) {
+                best.put(hit.taskId, hit);
+            } else if (hit.score > existing.score) {
+                // Show the better hit's snippet but count the other hits too
+                hit.score += existing.score;
+                best.put(hit.taskId, hit);
+            } else {
+                existing.score += hit.score;
+            }
+        }
+
+        List<Hit> ranked = new ArrayList<>(best.values());
+        Collections.sort(ranked, new Comparator<Hit>() {
+            @Override
+            public int compare(Hit a, Hit b) {
+                int byScore = Double.compare(b.score, a.score);
+                return byScore != 0 ? byScore : Integer.compare(a.taskId, b.taskId);
+            }
+        });
+        return ranked.size() > limit ? new ArrayList<>(ranked.subList(0, limit)) : ranked;
+    }
+
+    /**
+     * Puts snippet rows into the order of the ranked hits they were fetched for.
+     */
+    static List<TaskSearchResult> inRankOrder(List<Hit> ranked, List<TaskSearchResult> taskRows,
+                                              List<TaskSearchResult> commentRows) {
+        Map<Integer, TaskSearchResult> byTask = new HashMap<>();
+        for (TaskSearchResult row : taskRows) {
+            byTask.put(row.id, row);
+        }
+        for (TaskSearchResult row : commentRows) {
+            byTask.put(row.id, row);
+        }
+        List<TaskSearchResult> results = new ArrayList<>(ranked.size());
+        for (Hit hit : ranked) {
+            TaskSearchResult row = byTask.get(hit.taskId);
+            // Missing if the row was deleted between the two steps
+            if (row != null) {
+                row.score = hit.score;
+                results.add(row);
+            }
+        }
+        return results;
+    }
+
+    // Weighted tf-idf style score from matchinfo('pcx'): phrase count, column count,
+    // then for every phrase and column (hits in this row, hits in all rows, rows with hits)
+    static double score(byte[] matchInfo, double[] columnWeights) {
+        if (matchInfo == null || matchInfo.length < 8) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phraseCount = buffer.getInt(0);
+        int columnCount = buffer.getInt(4);
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int offset = 8 + 12 * (phrase * columnCount + column);
+                if (offset + 8 > matchInfo.length) {
+                    return score;
+                }
+                int hitsInRow = buffer.getInt(offset);
+                int hitsInAllRows = buffer.getInt(offset + 4);
+                if (hitsInRow > 0 && hitsInAllRows > 0) {
+                    double weight = column < columnWeights.length ? columnWeights[column] : 1.0;
+                    score += weight * hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.todoapp;
+
+/**
+ * Task counts for the main screen header, computed by one aggregate query in TaskDao.
+ */
+public class TaskStats {
+    private int total;
+    private int completed;
+    private int lowCount;
+    private int mediumCount;
+    private int highCount;
+
+    public TaskStats(int total, int completed, int lowCount, int mediumCount, int highCount) {
+        this.total = total;
+        this.completed = completed;
+        this.lowCount = lowCount;
+        this.mediumCount = mediumCount;
+        this.highCount = highCount;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public int getPending() {
+        return total - completed;
+    }
+
+    public int getLowCount() {
+        return lowCount;
+    }
+
+    public int getMediumCount() {
+        return mediumCount;
+    }
+
+    public int getHighCount() {
+        return highCount;
+    }
+
+    public int getCompletionPercent() {
+        return total == 0 ? 0 : Math.round(completed * 100f / total);
+    }
+
+    // Needed so unchanged counts can be dropped by distinctUntilChanged
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TaskStats)) {
+            return false;
+        }
+        TaskStats other = (TaskStats) o;
+        return total == other.total && completed == other.completed && lowCount == other.lowCount
+                && mediumCount == other.mediumCount && highCount == other.highCount;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = total;
+        result = 31 * result + completed;
+        result = 31 * result + lowCount;
+        result = 31 * result + mediumCount;
+        result = 31 * result + highCount;
+        return result;
+    }
+}
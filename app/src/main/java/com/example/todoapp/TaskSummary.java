@@ -0,0 +1,68 @@
+package com.example.todoapp;
+
+/**
+ * The columns of a task that the list screen shows.
+ *
+ * List queries select only these, so long descriptions are never loaded for rows
+ * that are just scrolled past. The full {@link Task} is loaded by id on the detail screen.
+ * Comment counters come from task_activity, joined by primary key.
+ */
+public class TaskSummary {
+    static final String COLUMNS = "id, title, priority, isCompleted, " +
+            "COALESCE(commentCount, 0) AS commentCount, COALESCE(lastCommentAt, 0) AS lastCommentAt";
+    static final String FROM = "task_table LEFT JOIN task_activity ON task_activity.taskId = task_table.id";
+
+    private int id;
+    private String title;
+    private int priority;
+    private boolean isCompleted;
+    private int commentCount;
+    private long lastCommentAt;
+
+    public TaskSummary(int id, String title, int priority, boolean isCompleted,
+                       int commentCount, long lastCommentAt) {
+        this.id = id;
+        this.title = title;
+        this.priority = priority;
+        this.isCompleted = isCompleted;
+        this.commentCount = commentCount;
+        this.lastCommentAt = lastCommentAt;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public boolean isCompleted() {
+        return isCompleted;
+    }
+
+    public int getCommentCount() {
+        return commentCount;
+    }
+
+    public long getLastCommentAt() {
+        return lastCommentAt;
+    }
+
+    public String getPriorityText() {
+        switch (priority) {
+            case 1:
+                return "Low";
+            case 2:
+                return "Medium";
+            case 3:
+                return "High";
+            default:
+                return "Medium";
+        }
+    }
+}
@@ -1,23 +1,46 @@
 package com.example.todoapp;
 
 import android.app.Application;
+import android.net.Uri;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.paging.PagedList;
 
 import java.util.List;
 
 public class TaskViewModel extends AndroidViewModel {
     private TaskRepository repository;
-    private LiveData<List<Task>> allTasks;
-    private LiveData<List<Task>> allTasksAlphabetically;
+    private MutableLiveData<TaskQuery> taskQuery = new MutableLiveData<>(TaskQuery.DEFAULT);
+    private LiveData<PagedList<TaskSummary>> tasks;
+    private LiveData<TaskStats> taskStats;
+    private TaskImporter importer;
 
     public TaskViewModel(@NonNull Application application) {
+        this(application, new TaskRepository(application));
+    }
+
+    @VisibleForTesting
+    TaskViewModel(@NonNull Application application, TaskRepository repository) {
         super(application);
-        repository = new TaskRepository(application);
-        allTasks = repository.getAllTasks();
-        allTasksAlphabetically = repository.getAllTasksAlphabetically();
+        this.repository = repository;
+        // One live Room query at a time: switchMap drops the previous source when the spec changes,
+        // and repeated identical specs don't restart the query
+        tasks = Transformations.switchMap(Transformations.distinctUntilChanged(taskQuery),
+                query -> repository.getTasks(query));
+        taskStats = repository.getTaskStats();
+        importer = new TaskImporter(application);
+    }
+
+    @Override
+    protected void onCleared() {
+        // Stops at the next batch, importing the same file again resumes it
+        importer.cancel();
+        super.onCleared();
     }
 
     // Task methods
@@ -29,20 +52,44 @@ public class TaskViewModel extends AndroidViewModel {
         repository.update(task);
     }
 
-    public void delete(Task task) {
-        repository.delete(task);
+    public void delete(int taskId) {
+        repository.delete(taskId);
+    }
+
+    public void setCompleted(int taskId, boolean completed) {
+        repository.setCompleted(taskId, completed);
+    }
+
+    public void setCompleted(List<Integer> taskIds, boolean completed) {
+        repository.setCompleted(taskIds, completed);
+    }
+
+    public void setPriority(int taskId, int priority) {
+        repository.setPriority(taskId, priority);
+    }
+
+    public LiveData<TaskStats> getTaskStats() {
+        return taskStats;
     }
 
     public void deleteCompletedTasks() {
         repository.deleteCompletedTasks();
     }
 
-    public LiveData<List<Task>> getAllTasks() {
-        return allTasks;
+    public LiveData<PagedList<TaskSummary>> getTasks() {
+        return tasks;
+    }
+
+    public TaskQuery getTaskQuery() {
+        return taskQuery.getValue();
+    }
+
+    public void setSortOrder(TaskQuery.SortOrder sortOrder) {
+        taskQuery.setValue(getTaskQuery().withSortOrder(sortOrder));
     }
 
-    public LiveData<List<Task>> getAllTasksAlphabetically() {
-        return allTasksAlphabetically;
+    public void setShowCompleted(boolean showCompleted) {
+        taskQuery.setValue(getTaskQuery().withShowCompleted(showCompleted));
     }
 
     // Comment methods
@@ -50,7 +97,16 @@ public class TaskViewModel extends AndroidViewModel {
         repository.insertComment(comment);
     }
 
-    public LiveData<List<Comment>> getCommentsForTask(int taskId) {
-        return repository.getCommentsForTask(taskId);
+    // Bulk import
+    public boolean importTasks(Uri uri) {
+        return importer.start(uri);
+    }
+
+    public void cancelImport() {
+        importer.cancel();
+    }
+
+    public LiveData<TaskImporter.Progress> getImportProgress() {
+        return importer.getProgress();
     }
-}
\ No newline at end of file
+}
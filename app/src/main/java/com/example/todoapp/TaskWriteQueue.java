@@ -0,0 +1,381 @@
+package com.example.todoapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Queues task and comment writes and flushes them in one database transaction.
+ *
+ * Writes that arrive within {@link #FLUSH_WINDOW_MS} of each other are coalesced.
+ * Consecutive writes of the same kind go through the list-based DAO methods, so
+ * checking off twenty tasks quickly costs one transaction instead of twenty.
+ * If a batch fails, each of its writes is retried in a transaction of its own, so one
+ * bad write (say a comment for a task deleted meanwhile) only fails its own callback.
+ */
+public class TaskWriteQueue {
+    private static final String TAG = "TaskWriteQueue";
+
+    static final long FLUSH_WINDOW_MS = 50;
+    static final int MAX_BATCH_SIZE = 500;
+
+    private static TaskWriteQueue instance;
+
+    // Callback for a single queued write, delivered on the main thread
+    public interface WriteCallback {
+        void onWriteComplete(long rowId);
+        void onWriteFailed(Exception e);
+    }
+
+    private enum Op {
+        INSERT_TASK, UPDATE_TASK, DELETE_TASK, SET_COMPLETED, SET_PRIORITY, DELETE_COMPLETED_TASKS, INSERT_COMMENT
+    }
+
+    private static class Mutation {
+        final Op op;
+        final Object item;
+        // Row and column value for writes that only need a task id
+        final int taskId;
+        final int value;
+        final WriteCallback callback;
+
+        Mutation(Op op, Object item, WriteCallback callback) {
+            this(op, item, 0, 0, callback);
+        }
+
+        Mutation(Op op, int taskId, int value, WriteCallback callback) {
+            this(op, null, taskId, value, callback);
+        }
+
+        private Mutation(Op op, Object item, int taskId, int value, WriteCallback callback) {
+            this.op = op;
+            this.item = item;
+            this.taskId = taskId;
+            this.value = value;
+            this.callback = callback;
+        }
+    }
+
+    private final TaskDatabase database;
+    private final TaskDao taskDao;
+    private final CommentDao commentDao;
+    // Flushes run one at a time on the database writer so batches commit in order
+    private final Executor writer;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private final Runnable delayedFlush = new Runnable() {
+        @Override
+        public void run() {
+            writer.execute(flushRunnable);
+        }
+    };
+
+    private final Object lock = new Object();
+    private List<Mutation> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private int transactionCount;
+
+    TaskWriteQueue(TaskDatabase database) {
+        this(database, AppExecutors.getInstance().databaseWrite());
+    }
+
+    TaskWriteQueue(TaskDatabase database, Executor ioExecutor) {
+        this.database = database;
+        this.writer = new SerialExecutor(ioExecutor);
+        this.taskDao = database.taskDao();
+        this.commentDao = database.commentDao();
+    }
+
+    public static synchronized TaskWriteQueue getInstance(TaskDatabase database) {
+        if (instance == null) {
+            instance = new TaskWriteQueue(database);
+        }
+        return instance;
+    }
+
+    public void insertTask(Task task, WriteCallback callback) {
+        enqueue(new Mutation(Op.INSERT_TASK, task, callback));
+    }
+
+    public void updateTask(Task task, WriteCallback callback) {
+        enqueue(new Mutation(Op.UPDATE_TASK, task, callback));
+    }
+
+    public void deleteTask(int taskId, WriteCallback callback) {
+        enqueue(new Mutation(Op.DELETE_TASK, taskId, 0, callback));
+    }
+
+    public void setCompleted(int taskId, boolean completed, WriteCallback callback) {
+        enqueue(new Mutation(Op.SET_COMPLETED, taskId, completed ? 1 : 0, callback));
+    }
+
+    public void setPriority(int taskId, int priority, WriteCallback callback) {
+        enqueue(new Mutation(Op.SET_PRIORITY, taskId, priority, callback));
+    }
+
+    public void deleteCompletedTasks(WriteCallback callback) {
+        enqueue(new Mutation(Op.DELETE_COMPLETED_TASKS, null, callback));
+    }
+
+    public void insertComment(Comment comment, WriteCallback callback) {
+        enqueue(new Mutation(Op.INSERT_COMMENT, comment, callback));
+    }
+
+    // Number of transactions committed so far, checked by TaskWriteQueueTest
+    public int getTransactionCount() {
+        synchronized (lock) {
+            return transactionCount;
+        }
+    }
+
+    private void enqueue(Mutation mutation) {
+        synchronized (lock) {
+            pending.add(mutation);
+            if (pending.size() >= MAX_BATCH_SIZE) {
+                // Don't let a large import sit in memory waiting for the window
+                flushScheduled = true;
+                writer.execute(flushRunnable);
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                mainHandler.postDelayed(delayedFlush, FLUSH_WINDOW_MS);
+            }
+        }
+    }
+
+    private void flush() {
+        final List<Mutation> batch;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+
+        final long[] rowIds = new long[batch.size()];
+        long start = QueryMetrics.now();
+        try {
+            database.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    applyBatch(batch, rowIds);
+                }
+            });
+            synchronized (lock) {
+                transactionCount++;
+            }
+            QueryMetrics.getInstance().record("TaskWriteQueue.flush", start, batch.size());
+            Log.d(TAG, "Flushed " + batch.size() + " writes in one transaction");
+        } catch (Exception e) {
+            // The whole batch rolled back, find out which writes were at fault
+            Log.e(TAG, "Error flushing " + batch.size() + " writes, retrying one by one: " + e.getMessage(), e);
+            applyEach(batch);
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            notifyComplete(batch.get(i), rowIds[i]);
+        }
+    }
+
+    // One transaction per write, each reported on its own
+    private void applyEach(final List<Mutation> batch) {
+        final long[] rowIds = new long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            final int index = i;
+            Mutation mutation = batch.get(i);
+            try {
+                database.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyRun(batch.get(index).op, batch, index, index + 1, rowIds);
+                    }
+                });
+                synchronized (lock) {
+                    transactionCount++;
+                }
+                notifyComplete(mutation, rowIds[i]);
+            } catch (Exception e) {
+                Log.e(TAG, "Error applying " + mutation.op + ": " + e.getMessage(), e);
+                notifyFailed(mutation, e);
+            }
+        }
+    }
+
+    // Applies consecutive runs of the same operation through the list-based DAO methods,
+    // keeping the original order between different kinds of writes
+    private void applyBatch(List<Mutation> batch, long[] rowIds) {
+        int start = 0;
+        while (start < batch.size()) {
+            Op op = batch.get(start).op;
+            int end = start + 1;
+            while (end < batch.size() && batch.get(end).op == op) {
+                end++;
+            }
+            applyRun(op, batch, start, end, rowIds);
+            start = end;
+        }
+    }
+
+    private void applyRun(Op op, List<Mutation> batch, int start, int end, long[] rowIds) {
+        switch (op) {
+            case INSERT_TASK: {
+                List<Task> tasks = tasksIn(batch, start, end);
+                List<Long> ids = taskDao.insertAll(tasks);
+                for (int i = 0; i < ids.size(); i++) {
+                    long id = ids.get(i);
+                    tasks.get(i).setId((int) id);
+                    rowIds[start + i] = id;
+                }
+                break;
+            }
+            case UPDATE_TASK:
+                taskDao.updateAll(tasksIn(batch, start, end));
+                fillTaskIds(batch, start, end, rowIds);
+                break;
+            case DELETE_TASK: {
+                // Chunked to stay under SQLite's bound variable limit
+                List<Integer> ids = new ArrayList<>();
+                for (int i = start; i < end; i++) {
+                    ids.add(batch.get(i).taskId);
+                    rowIds[i] = batch.get(i).taskId;
+                    if (ids.size() == MAX_BATCH_SIZE) {
+                        taskDao.deleteByIds(ids);
+                        ids.clear();
+                    }
+                }
+                if (!ids.isEmpty()) {
+                    taskDao.deleteByIds(ids);
+                }
+                break;
+            }
+            case SET_COMPLETED: {
+                // Consecutive toggles to the same state become one UPDATE ... WHERE id IN (...)
+                List<Integer> ids = new ArrayList<>();
+                int flag = batch.get(start).value;
+                for (int i = start; i < end; i++) {
+                    Mutation mutation = batch.get(i);
+                    if (mutation.value != flag || ids.size() == MAX_BATCH_SIZE) {
+                        taskDao.setCompletedForIds(ids, flag == 1);
+                        ids.clear();
+                        flag = mutation.value;
+                    }
+                    ids.add(mutation.taskId);
+                    rowIds[i] = mutation.taskId;
+                }
+                taskDao.setCompletedForIds(ids, flag == 1);
+                break;
+            }
+            case SET_PRIORITY:
+                for (int i = start; i < end; i++) {
+                    Mutation mutation = batch.get(i);
+                    taskDao.setPriority(mutation.taskId, mutation.value);
+                    rowIds[i] = mutation.taskId;
+                }
+                break;
+            case DELETE_COMPLETED_TASKS:
+                // Repeated requests collapse into one statement
+                taskDao.deleteCompletedTasks();
+                break;
+            case INSERT_COMMENT: {
+                List<Comment> comments = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    comments.add((Comment) batch.get(i).item);
+                }
+                List<Long> ids = commentDao.insertAll(comments);
+                for (int i = 0; i < ids.size(); i++) {
+                    long id = ids.get(i);
+                    comments.get(i).setId((int) id);
+                    rowIds[start + i] = id;
+                }
+                break;
+            }
+        }
+    }
+
+    private static List<Task> tasksIn(List<Mutation> batch, int start, int end) {
+        List<Task> tasks = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            tasks.add((Task) batch.get(i).item);
+        }
+        return tasks;
+    }
+
+    private static void fillTaskIds(List<Mutation> batch, int start, int end, long[] rowIds) {
+        for (int i = start; i < end; i++) {
+            rowIds[i] = ((Task) batch.get(i).item).getId();
+        }
+    }
+
+    private void notifyComplete(final Mutation mutation, final long rowId) {
+        if (mutation.callback == null) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mutation.callback.onWriteComplete(rowId);
+            }
+        });
+    }
+
+    private void notifyFailed(final Mutation mutation, final Exception e) {
+        if (mutation.callback == null) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mutation.callback.onWriteFailed(e);
+            }
+        });
+    }
+
+    // Runs tasks one after another on a shared executor
+    private static class SerialExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private final Executor delegate;
+        private Runnable active;
+
+        SerialExecutor(Executor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull final Runnable command) {
+            tasks.offer(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        command.run();
+                    } finally {
+                        scheduleNext();
+                    }
+                }
+            });
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            active = tasks.poll();
+            if (active != null) {
+                delegate.execute(active);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.todoapp;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.room.InvalidationTracker;
+import androidx.room.RoomDatabase;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * LiveData over a one-shot DAO query that reruns when its tables change, like a DAO
+ * method returning LiveData, except every run is timed into {@link QueryMetrics}.
+ *
+ * The table observer is registered while the LiveData has active observers and removed
+ * when it has none, always on the read executor since the tracker may need the database.
+ * Coming back to active reruns the query, as changes while inactive weren't tracked.
+ */
+public class TimedQueryLiveData<T> extends LiveData<T> {
+    private final InvalidationTracker invalidationTracker;
+    private final String name;
+    private final Callable<T> query;
+    private final Executor executor = AppExecutors.getInstance().databaseRead();
+    private final InvalidationTracker.Observer tableObserver;
+    private final AtomicBoolean invalid = new AtomicBoolean(true);
+    private final AtomicBoolean computing = new AtomicBoolean(false);
+    private boolean registered;
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            if (!updateRegistration()) {
+                return;
+            }
+            boolean computed;
+            do {
+                computed = false;
+                if (computing.compareAndSet(false, true)) {
+                    try {
+                        T value = null;
+                        while (invalid.compareAndSet(true, false)) {
+                            computed = true;
+                            value = runQuery();
+                        }
+                        if (computed) {
+                            postValue(value);
+                        }
+                    } finally {
+                        computing.set(false);
+                    }
+                }
+                // A change that came in after the last run but found us still computing
+            } while (computed && invalid.get());
+        }
+    };
+
+    public TimedQueryLiveData(RoomDatabase database, String name, Callable<T> query, String... tables) {
+        this.invalidationTracker = database.getInvalidationTracker();
+        this.name = name;
+        this.query = query;
+        this.tableObserver = new InvalidationTracker.Observer(tables) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                invalid.set(true);
+                executor.execute(refresh);
+            }
+        };
+    }
+
+    @Override
+    protected void onActive() {
+        executor.execute(refresh);
+    }
+
+    @Override
+    protected void onInactive() {
+        executor.execute(refresh);
+    }
+
+    // Registers or removes the table observer to match the active state, true while active
+    private synchronized boolean updateRegistration() {
+        boolean active = hasActiveObservers();
+        if (active && !registered) {
+            invalidationTracker.addObserver(tableObserver);
+            registered = true;
+            invalid.set(true);
+        } else if (!active && registered) {
+            invalidationTracker.removeObserver(tableObserver);
+            registered = false;
+        }
+        return active;
+    }
+
+    private T runQuery() {
+        long start = QueryMetrics.now();
+        try {
+            T value = query.call();
+            QueryMetrics.getInstance().record(name, start, value != null ? 1 : 0);
+            return value;
+        } catch (Exception e) {
+            throw new RuntimeException("Error running " + name, e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.todoapp;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Starts the database and session loading on the IO pool at process start,
+ * so the first Activity doesn't open SQLite on the main thread.
+ */
+public class TodoApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        StartupTrace.start();
+        super.onCreate();
+
+        SessionManager.preload(this);
+        AppExecutors.getInstance().diskIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                warmUpDatabase();
+            }
+        });
+        // Measured once per install, so the first login doesn't pay for it
+        AppExecutors.getInstance().credentials().execute(new Runnable() {
+            @Override
+            public void run() {
+                Credentials.getInstance(TodoApplication.this).calibrate();
+            }
+        });
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        TaskDetailCache.getInstance(this).trimMemory(level);
+        // Debug builds keep the query metrics from each session in files/query_metrics.txt
+        if (level >= TRIM_MEMORY_UI_HIDDEN
+                && (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            AppExecutors.getInstance().diskIO().execute(new Runnable() {
+                @Override
+                public void run() {
+                    QueryMetrics.getInstance().dump(TodoApplication.this);
+                }
+            });
+        }
+    }
+
+    private void warmUpDatabase() {
+        try {
+            StartupTrace.beginSection(StartupTrace.DB_OPEN);
+            TaskDatabase database = TaskDatabase.getInstance(this);
+            // Opening the helper runs migrations and schema validation
+            SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+            StartupTrace.endSection(StartupTrace.DB_OPEN);
+            Log.d("TodoApplication", "Database open, WAL enabled: " + db.isWriteAheadLoggingEnabled());
+
+            // Run the first-screen queries once so their statements are prepared and pages cached
+            TaskDao taskDao = database.taskDao();
+            taskDao.getFirstPageByPriority(true, 1);
+            taskDao.getFirstPageAlphabetically(true, 1);
+
+            // Registration checks emails against this filter instead of the table
+            UserRepository.getInstance(this).loadEmailFilter();
+
+            // A rename cut short by process death carries on from its last batch
+            CommentRenamePropagator.getInstance(this).resumePending();
+        } catch (Exception e) {
+            Log.e("TodoApplication", "Error warming up database: " + e.getMessage(), e);
+        }
+    }
+}
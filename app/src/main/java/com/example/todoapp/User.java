@@ -1,15 +1,18 @@
 package com.example.todoapp;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "user_table")
+@Entity(tableName = "user_table",
+        // Login and registration look users up by email
+        indices = {@Index(value = {"email"}, unique = true)})
 public class User {
     @PrimaryKey(autoGenerate = true)
     private int id;
 
     private String email;
-    private String password; // In a real app, this should be hashed
+    private String password; // PBKDF2 hash, see Credentials. Older rows may still be plaintext
     private String fullName;
 
     public User(String email, String password, String fullName) {
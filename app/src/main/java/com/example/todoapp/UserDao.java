@@ -1,5 +1,7 @@
 package com.example.todoapp;
 
+import android.database.Cursor;
+
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
@@ -21,4 +23,8 @@ public interface UserDao {
 
     @Query("SELECT COUNT(*) FROM user_table")
     int getUserCount();
+
+    // Streams every address for building the email filter, read straight from the email index
+    @Query("SELECT email FROM user_table")
+    Cursor getAllEmails();
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package com.example.todoapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+import android.util.LruCache;
+
+/**
+ * Reads and writes users through a small in-memory cache.
+ *
+ * Users are cached by id, with a second map from email to id, so the profile screen
+ * and login don't query user_table on every visit. Inserts and updates go to the
+ * database first and then into the cache, so the cache never holds a row the
+ * database doesn't. Logging out empties it. Callers get copies and can modify them
+ * freely. Call these methods off the main thread, like the DAO.
+ *
+ * A Bloom filter of every registered email answers most availability checks during
+ * registration without a query. It is loaded at startup and updated on every write.
+ */
+public class UserRepository implements SessionManager.SessionListener {
+    private static final int MAX_CACHED_USERS = 32;
+
+    private static UserRepository instance;
+
+    private final UserDao userDao;
+    private final LruCache<Integer, User> usersById = new LruCache<>(MAX_CACHED_USERS);
+    private final LruCache<String, Integer> idsByEmail = new LruCache<>(MAX_CACHED_USERS);
+    // Null until loaded, checks fall back to the database meanwhile
+    private volatile EmailBloomFilter emailFilter;
+
+    private UserRepository(Context context) {
+        userDao = TaskDatabase.getInstance(context).userDao();
+    }
+
+    public static synchronized UserRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new UserRepository(context.getApplicationContext());
+            SessionManager.addSessionListener(instance);
+        }
+        return instance;
+    }
+
+    public User getUserById(int userId) {
+        User user = usersById.get(userId);
+        if (user == null) {
+            long start = QueryMetrics.now();
+            user = userDao.getUserById(userId);
+            QueryMetrics.getInstance().record("UserDao.getUserById", start, user != null ? 1 : 0);
+            if (user == null) {
+                return null;
+            }
+            put(user);
+        }
+        return copyOf(user);
+    }
+
+    public User getUserByEmail(String email) {
+        Integer userId = idsByEmail.get(email);
+        if (userId != null) {
+            User user = usersById.get(userId);
+            // The id may have been cached for an address the user has since changed
+            if (user != null && email.equals(user.getEmail())) {
+                return copyOf(user);
+            }
+        }
+        long start = QueryMetrics.now();
+        User user = userDao.getUserByEmail(email);
+        QueryMetrics.getInstance().record("UserDao.getUserByEmail", start, user != null ? 1 : 0);
+        if (user == null) {
+            return null;
+        }
+        put(user);
+        return copyOf(user);
+    }
+
+    // Returns the new row id; the unique email index rejects duplicates
+    public long insert(User user) {
+        long userId = userDao.insert(user);
+        user.setId((int) userId);
+        put(user);
+        addToEmailFilter(user.getEmail());
+        return userId;
+    }
+
+    public void update(User user) {
+        userDao.update(user);
+        put(user);
+        // The old address stays in the filter, a false positive the database check resolves
+        addToEmailFilter(user.getEmail());
+    }
+
+    /**
+     * True if no account uses this email. Most free addresses are answered by the
+     * filter alone; a filter hit is confirmed against the email index.
+     */
+    public boolean isEmailAvailable(String email) {
+        EmailBloomFilter filter = emailFilter;
+        if (filter != null && !filter.mightContain(email)) {
+            return true;
+        }
+        return getUserByEmail(email) == null;
+    }
+
+    // Builds the email filter from user_table, at startup and after a restore
+    public void loadEmailFilter() {
+        long start = QueryMetrics.now();
+        // Room for the table to double before the filter needs rebuilding
+        EmailBloomFilter filter = new EmailBloomFilter(userDao.getUserCount() * 2);
+        Cursor cursor = userDao.getAllEmails();
+        try {
+            while (cursor.moveToNext()) {
+                if (!cursor.isNull(0)) {
+                    filter.add(cursor.getString(0));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        emailFilter = filter;
+        QueryMetrics.getInstance().record("UserRepository.loadEmailFilter", start, filter.size());
+    }
+
+    private void addToEmailFilter(String email) {
+        EmailBloomFilter filter = emailFilter;
+        if (filter == null || email == null) {
+            return;
+        }
+        filter.add(email);
+        if (filter.isOverCapacity()) {
+            AppExecutors.getInstance().diskIO().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        loadEmailFilter();
+                    } catch (Exception e) {
+                        Log.e("UserRepository", "Error rebuilding email filter: " + e.getMessage(), e);
+                    }
+                }
+            });
+        }
+    }
+
+    public synchronized void clear() {
+        usersById.evictAll();
+        idsByEmail.evictAll();
+    }
+
+    @Override
+    public void onSessionChanged(Session session) {
+        if (!session.isLoggedIn()) {
+            clear();
+        }
+    }
+
+    private synchronized void put(User user) {
+        User cached = copyOf(user);
+        User previous = usersById.put(cached.getId(), cached);
+        // An email change must not leave the old address pointing at this user
+        if (previous != null && previous.getEmail() != null
+                && !previous.getEmail().equals(cached.getEmail())) {
+            idsByEmail.remove(previous.getEmail());
+        }
+        if (cached.getEmail() != null) {
+            idsByEmail.put(cached.getEmail(), cached.getId());
+        }
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User(user.getEmail(), user.getPassword(), user.getFullName());
+        copy.setId(user.getId());
+        return copy;
+    }
+}
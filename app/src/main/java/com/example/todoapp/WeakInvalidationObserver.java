@@ -0,0 +1,49 @@
+package com.example.todoapp;
+
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.room.InvalidationTracker;
+
+import java.lang.ref.WeakReference;
+import java.util.Set;
+
+/**
+ * Invalidates a paged data source when its tables change, without keeping it alive.
+ *
+ * The tracker holds its observers strongly, so a source abandoned together with its
+ * LiveData would otherwise stay reachable, with its DAO and keys, until the next write.
+ * Like Room's own paging sources, the source is only weakly referenced here and the
+ * observer removes itself on the first change after the source is gone.
+ */
+class WeakInvalidationObserver extends InvalidationTracker.Observer {
+    private final InvalidationTracker tracker;
+    private final WeakReference<DataSource<?, ?>> source;
+
+    private WeakInvalidationObserver(InvalidationTracker tracker, DataSource<?, ?> source, String[] tables) {
+        super(tables);
+        this.tracker = tracker;
+        this.source = new WeakReference<DataSource<?, ?>>(source);
+    }
+
+    // Also unregisters as soon as the source is invalidated for any other reason
+    static void register(final InvalidationTracker tracker, DataSource<?, ?> source, String... tables) {
+        final WeakInvalidationObserver observer = new WeakInvalidationObserver(tracker, source, tables);
+        tracker.addObserver(observer);
+        source.addInvalidatedCallback(new DataSource.InvalidatedCallback() {
+            @Override
+            public void onInvalidated() {
+                tracker.removeObserver(observer);
+            }
+        });
+    }
+
+    @Override
+    public void onInvalidated(@NonNull Set<String> tables) {
+        DataSource<?, ?> current = source.get();
+        if (current == null) {
+            tracker.removeObserver(this);
+        } else {
+            current.invalidate();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.todoapp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Starts TodoApplication and MainActivity cold and checks the StartupTrace milestones.
+ *
+ * Background work runs on real threads, but Robolectric's clock only moves when the test
+ * idles the main looper a frame at a time, after that work has finished. Offsets therefore
+ * count the frames the main thread needed, which is what the budgets bound.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = ColdStartTest.ColdStartApplication.class, sdk = 28)
+public class ColdStartTest {
+    private static final long FRAME_MS = 16;
+    private static final int MAX_FRAMES = 200;
+    private static final long DB_OPEN_BUDGET_MS = 100;
+    private static final long FIRST_EMISSION_BUDGET_MS = 200;
+    private static final long FIRST_BIND_BUDGET_MS = 300;
+    private static final int TASKS = 50;
+
+    private static Background background;
+
+    /**
+     * Statics outlive Robolectric's per-test application, so each run resets them and signs
+     * a user in before TodoApplication's own startup.
+     */
+    public static class ColdStartApplication extends TodoApplication {
+        @Override
+        public void onCreate() {
+            StartupTrace.reset();
+            TaskDatabase.resetInstance();
+            background = new Background();
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            AppExecutors.setInstance(new AppExecutors(background.pool(4), background.pool(1),
+                    background.pool(2), background.pool(1), new Executor() {
+                        @Override
+                        public void execute(@NonNull Runnable command) {
+                            mainHandler.post(command);
+                        }
+                    }));
+            new SessionManager(this).createLoginSession(1, "ann@example.com", "Ann");
+            super.onCreate();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        TaskDatabase.resetInstance();
+        background.shutdown();
+        AppExecutors.setInstance(null);
+        StartupTrace.reset();
+    }
+
+    @Test
+    public void firstScreenIsBoundWithinBudgetWithoutOpeningTheDatabaseOnTheMainThread() throws Exception {
+        // TodoApplication opened the database on diskIO
+        background.awaitIdle();
+        Thread openedOn = TaskDatabase.getOpenedOn();
+        assertNotNull("database not opened at startup", openedOn);
+        assertNotSame(Looper.getMainLooper().getThread(), openedOn);
+
+        // Something to bind, written off the main thread like the app's own writes
+        AppExecutors.getInstance().databaseWrite().execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Task> tasks = new ArrayList<>(TASKS);
+                for (int i = 0; i < TASKS; i++) {
+                    tasks.add(new Task("Task " + i, "", i % 3 + 1));
+                }
+                TaskDatabase.getInstance(RuntimeEnvironment.getApplication()).taskDao().insertAll(tasks);
+            }
+        });
+        background.awaitIdle();
+
+        Robolectric.buildActivity(MainActivity.class).setup();
+        ShadowLooper mainLooper = shadowOf(Looper.getMainLooper());
+        for (int frame = 0; !hasMark(StartupTrace.FIRST_BIND) && frame < MAX_FRAMES; frame++) {
+            settle(mainLooper);
+            mainLooper.idleFor(FRAME_MS, TimeUnit.MILLISECONDS);
+        }
+        settle(mainLooper);
+
+        List<String> marks = StartupTrace.getMarks();
+        long processStart = offset(marks, StartupTrace.PROCESS_START);
+        assertWithin(marks, StartupTrace.DB_OPEN, processStart, DB_OPEN_BUDGET_MS);
+        assertWithin(marks, StartupTrace.FIRST_EMISSION, processStart, FIRST_EMISSION_BUDGET_MS);
+        assertWithin(marks, StartupTrace.FIRST_BIND, processStart, FIRST_BIND_BUDGET_MS);
+        assertTrue(marks.toString(), offset(marks, StartupTrace.FIRST_EMISSION) <= offset(marks, StartupTrace.FIRST_BIND));
+        // Nothing since opened it again on the main thread
+        assertNotSame(Looper.getMainLooper().getThread(), TaskDatabase.getOpenedOn());
+    }
+
+    // Runs the main looper and the background threads until neither has work left
+    private static void settle(ShadowLooper mainLooper) throws InterruptedException {
+        do {
+            mainLooper.idle();
+            background.awaitIdle();
+        } while (!mainLooper.isIdle());
+    }
+
+    private static boolean hasMark(String name) {
+        for (String mark : StartupTrace.getMarks()) {
+            if (mark.startsWith(name + "=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void assertWithin(List<String> marks, String name, long processStart, long budgetMs) {
+        long elapsed = offset(marks, name) - processStart;
+        assertTrue(name + " took " + elapsed + " ms, budget " + budgetMs + " ms: " + marks, elapsed <= budgetMs);
+    }
+
+    // Marks read "name=123ms"
+    private static long offset(List<String> marks, String name) {
+        for (String mark : marks) {
+            if (mark.startsWith(name + "=")) {
+                return Long.parseLong(mark.substring(name.length() + 1, mark.length() - 2));
+            }
+        }
+        throw new AssertionError(name + " not in " + marks);
+    }
+
+    // Real threads that count what is still queued or running
+    private static final class Background {
+        private static final long TIMEOUT_MS = 30_000;
+
+        private final AtomicInteger pending = new AtomicInteger();
+        private final List<ExecutorService> pools = new ArrayList<>();
+
+        Executor pool(int threads) {
+            final ExecutorService pool = Executors.newFixedThreadPool(threads);
+            pools.add(pool);
+            return new Executor() {
+                @Override
+                public void execute(@NonNull final Runnable command) {
+                    pending.incrementAndGet();
+                    pool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                command.run();
+                            } finally {
+                                pending.decrementAndGet();
+                            }
+                        }
+                    });
+                }
+            };
+        }
+
+        // Counts real sleeps, Robolectric's clocks stand still while the test waits here
+        void awaitIdle() throws InterruptedException {
+            for (long waitedMs = 0; pending.get() > 0; waitedMs++) {
+                if (waitedMs > TIMEOUT_MS) {
+                    fail(pending.get() + " background tasks still running");
+                }
+                Thread.sleep(1);
+            }
+        }
+
+        void shutdown() {
+            for (ExecutorService pool : pools) {
+                pool.shutdownNow();
+            }
+        }
+    }
+}
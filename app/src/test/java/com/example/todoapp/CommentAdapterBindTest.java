@@ -0,0 +1,149 @@
+package com.example.todoapp;
+
+import android.app.Application;
+import android.view.ContextThemeWrapper;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagedList;
+import androidx.paging.PositionalDataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Binds CommentItem rows through CommentAdapter and measures what binding a row the
+ * holder already shows allocates on the main thread.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class, sdk = 28)
+public class CommentAdapterBindTest {
+    private static final int ROWS = 1_000;
+    // Rows in the middle of the list, so binding them never asks the list to load more
+    private static final int FIRST_BOUND = 400;
+    private static final int HOLDERS = 12;
+    private static final int REBINDS = 1_000;
+    private static final long NOW = System.currentTimeMillis();
+    private static final long DAY_MS = 24 * 60 * CommentTimeFormatter.MINUTE_MS;
+
+    private final Executor direct = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private CommentAdapter adapter;
+    private List<CommentAdapter.CommentViewHolder> holders;
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setUp() {
+        ContextThemeWrapper context = new ContextThemeWrapper(RuntimeEnvironment.getApplication(), R.style.AppTheme);
+        adapter = new CommentAdapter();
+        adapter.submitList(pagedList(rows()));
+        assertEquals(ROWS, adapter.getItemCount());
+
+        FrameLayout parent = new FrameLayout(context);
+        holders = new ArrayList<>(HOLDERS);
+        for (int i = 0; i < HOLDERS; i++) {
+            holders.add(adapter.onCreateViewHolder(parent, 0));
+        }
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void rebindingUnchangedRowsAllocatesNothing() {
+        // Relative and absolute times, each holder keeping its own row
+        bindAll();
+        CharSequence[] shown = new CharSequence[HOLDERS * 3];
+        for (int i = 0; i < HOLDERS; i++) {
+            TextView[] views = textViews(holders.get(i));
+            for (int j = 0; j < views.length; j++) {
+                shown[i * 3 + j] = views[j].getText();
+            }
+        }
+        for (int i = 0; i < REBINDS; i++) {
+            bindAll();
+        }
+
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < REBINDS; i++) {
+            bindAll();
+        }
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertEquals(0, allocated);
+        for (int i = 0; i < HOLDERS; i++) {
+            TextView[] views = textViews(holders.get(i));
+            for (int j = 0; j < views.length; j++) {
+                assertSame(shown[i * 3 + j], views[j].getText());
+            }
+        }
+    }
+
+    private void bindAll() {
+        for (int i = 0; i < HOLDERS; i++) {
+            adapter.onBindViewHolder(holders.get(i), FIRST_BOUND + i);
+        }
+    }
+
+    private static TextView[] textViews(CommentAdapter.CommentViewHolder holder) {
+        return new TextView[]{
+                holder.itemView.findViewById(R.id.commentText),
+                holder.itemView.findViewById(R.id.userInfoTextView),
+                holder.itemView.findViewById(R.id.commentTimeTextView)
+        };
+    }
+
+    private static List<CommentItem> rows() {
+        List<CommentItem> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Comment comment = new Comment(1, i % 3 == 0 ? null : i, i % 3 == 0 ? null : "User " + i, "Comment " + i);
+            comment.setId(i + 1);
+            // Over an hour ago, so the label can't move on during the test, or days ago
+            comment.setTimestamp(i % 2 == 0 ? NOW - 80 * CommentTimeFormatter.MINUTE_MS : NOW - (i % 30 + 2) * DAY_MS);
+            rows.add(new CommentItem(comment));
+        }
+        return rows;
+    }
+
+    // Every row is loaded up front, so binding never loads pages
+    private PagedList<CommentItem> pagedList(final List<CommentItem> rows) {
+        PositionalDataSource<CommentItem> dataSource = new PositionalDataSource<CommentItem>() {
+            @Override
+            public void loadInitial(@NonNull LoadInitialParams params, @NonNull LoadInitialCallback<CommentItem> callback) {
+                callback.onResult(rows, 0, rows.size());
+            }
+
+            @Override
+            public void loadRange(@NonNull LoadRangeParams params, @NonNull LoadRangeCallback<CommentItem> callback) {
+                int end = Math.min(rows.size(), params.startPosition + params.loadSize);
+                callback.onResult(rows.subList(params.startPosition, end));
+            }
+        };
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(30)
+                .setInitialLoadSizeHint(ROWS)
+                .setEnablePlaceholders(false)
+                .build();
+        return new PagedList.Builder<>(dataSource, config)
+                .setNotifyExecutor(direct)
+                .setFetchExecutor(direct)
+                .build();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.todoapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CommentTimeFormatterTest {
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long HOUR_MS = 60 * CommentTimeFormatter.MINUTE_MS;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    private static final int REBINDS = 100_000;
+
+    private CommentTimeFormatter formatter;
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setUp() {
+        formatter = CommentTimeFormatter.getInstance();
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void relativeLabelsAreSharedInstances() {
+        assertEquals("just now", formatter.format(NOW - 10_000, NOW));
+        assertEquals("5m ago", formatter.format(NOW - 5 * CommentTimeFormatter.MINUTE_MS, NOW));
+        assertEquals("3h ago", formatter.format(NOW - 3 * HOUR_MS, NOW));
+        assertSame(formatter.format(NOW - 3 * HOUR_MS, NOW), formatter.format(NOW - 3 * HOUR_MS - 1, NOW));
+    }
+
+    @Test
+    public void olderThanADayUsesTheModelsAbsoluteLabel() {
+        long timestamp = NOW - 2 * DAY_MS;
+        String absolute = formatter.formatAbsolute(timestamp);
+        assertSame(absolute, formatter.format(timestamp, absolute, NOW));
+        // Every timestamp within a minute shares the cached label
+        assertSame(absolute, formatter.formatAbsolute(timestamp - timestamp % CommentTimeFormatter.MINUTE_MS));
+    }
+
+    @Test
+    public void minutesSharingACacheSlotFormatCorrectly() {
+        long timestamp = NOW - 10 * DAY_MS;
+        String first = formatter.formatAbsolute(timestamp);
+        // 512 minutes later lands in the same slot and evicts the first
+        String second = formatter.formatAbsolute(timestamp + 512 * CommentTimeFormatter.MINUTE_MS);
+        assertEquals(first, formatter.formatAbsolute(timestamp));
+        assertEquals(second, formatter.formatAbsolute(timestamp + 512 * CommentTimeFormatter.MINUTE_MS));
+    }
+
+    @Test
+    public void labelKeyChangesExactlyWhenTheLabelDoes() {
+        long timestamp = NOW - 3 * DAY_MS;
+        for (long now = timestamp; now < timestamp + 2 * DAY_MS; now += 7_000) {
+            long later = now + 7_000;
+            boolean sameLabel = formatter.format(timestamp, now).equals(formatter.format(timestamp, later));
+            boolean sameKey = CommentTimeFormatter.labelKey(timestamp, now) == CommentTimeFormatter.labelKey(timestamp, later);
+            assertEquals("at " + (now - timestamp) + "ms", sameLabel, sameKey);
+        }
+    }
+
+    @Test
+    public void rebindAllocatesNothing() {
+        // What a bind does per row: recent rows get a relative label, older ones their model's label
+        long[] timestamps = new long[64];
+        String[] absoluteLabels = new String[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = NOW - i * 37 * CommentTimeFormatter.MINUTE_MS - (i % 3) * DAY_MS;
+            absoluteLabels[i] = formatter.formatAbsolute(timestamps[i]);
+        }
+        int shown = bindAll(timestamps, absoluteLabels);
+
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < REBINDS / timestamps.length; i++) {
+            shown += bindAll(timestamps, absoluteLabels);
+        }
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertEquals(0, allocated);
+        assertEquals(REBINDS / timestamps.length + 1, shown / timestamps.length);
+    }
+
+    @Test
+    public void cachedAbsoluteLookupAllocatesNothing() {
+        long timestamp = NOW - 5 * DAY_MS;
+        formatter.formatAbsolute(timestamp);
+
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        int length = 0;
+        for (int i = 0; i < REBINDS; i++) {
+            length += formatter.formatAbsolute(timestamp).length();
+        }
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertEquals(0, allocated);
+        assertEquals(REBINDS * formatter.formatAbsolute(timestamp).length(), length);
+    }
+
+    private int bindAll(long[] timestamps, String[] absoluteLabels) {
+        int shown = 0;
+        for (int i = 0; i < timestamps.length; i++) {
+            if (formatter.format(timestamps[i], absoluteLabels[i], NOW) != null) {
+                shown++;
+            }
+        }
+        return shown;
+    }
+}
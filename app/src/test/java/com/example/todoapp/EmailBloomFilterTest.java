@@ -0,0 +1,109 @@
+package com.example.todoapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EmailBloomFilterTest {
+    private static final int USERS = 1_000_000;
+    private static final int PROBES = 1_000_000;
+    // Lookups per latency sample, so one sample is well above the timer's resolution
+    private static final int BATCH = 1_000;
+    private static final long MAX_P99_LOOKUP_NANOS = 5_000;
+
+    private static String registered(int i) {
+        return "user" + i + "@example.com";
+    }
+
+    private static String unregistered(int i) {
+        return "someone.else" + i + "@example.org";
+    }
+
+    private static EmailBloomFilter filled(int expectedEntries, int users) {
+        EmailBloomFilter filter = new EmailBloomFilter(expectedEntries);
+        for (int i = 0; i < users; i++) {
+            filter.add(registered(i));
+        }
+        return filter;
+    }
+
+    @Test
+    public void registeredEmailsAreAlwaysFound() {
+        EmailBloomFilter filter = filled(USERS, USERS);
+        for (int i = 0; i < USERS; i++) {
+            assertTrue(registered(i), filter.mightContain(registered(i)));
+        }
+        assertFalse(filter.isOverCapacity());
+    }
+
+    @Test
+    public void falsePositiveRateStaysNearTargetWithAMillionUsers() {
+        EmailBloomFilter filter = filled(USERS, USERS);
+        int falsePositives = 0;
+        for (int i = 0; i < PROBES; i++) {
+            if (filter.mightContain(unregistered(i))) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / PROBES;
+        // 1% target; the bound leaves room for hash quality, not for a mis-sized filter
+        assertTrue("false positive rate " + rate, rate < EmailBloomFilter.FALSE_POSITIVE_RATE * 1.5);
+    }
+
+    @Test
+    public void sizedForTwiceTheUsersTheRateIsFarBelowTarget() {
+        // How UserRepository builds it: room for the table to double before a rebuild
+        EmailBloomFilter filter = filled(2 * USERS, USERS);
+        int falsePositives = 0;
+        for (int i = 0; i < PROBES; i++) {
+            if (filter.mightContain(unregistered(i))) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / PROBES;
+        assertTrue("false positive rate " + rate, rate < EmailBloomFilter.FALSE_POSITIVE_RATE / 4);
+    }
+
+    @Test
+    public void overCapacityIsReported() {
+        EmailBloomFilter filter = filled(10_000, 10_001);
+        assertTrue(filter.isOverCapacity());
+    }
+
+    @Test
+    public void lookupLatencyWithAMillionUsers() {
+        EmailBloomFilter filter = filled(USERS, USERS);
+        String[] probes = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            // Half taken, half free, as an as-you-type check sees them
+            probes[i] = i % 2 == 0 ? registered(i) : unregistered(i);
+        }
+        // Warm up the JIT before timing
+        int found = 0;
+        for (int i = 0; i < PROBES; i++) {
+            if (filter.mightContain(probes[i])) {
+                found++;
+            }
+        }
+
+        long[] samples = new long[PROBES / BATCH];
+        for (int s = 0; s < samples.length; s++) {
+            long start = System.nanoTime();
+            for (int i = s * BATCH; i < (s + 1) * BATCH; i++) {
+                if (filter.mightContain(probes[i])) {
+                    found++;
+                }
+            }
+            samples[s] = (System.nanoTime() - start) / BATCH;
+        }
+        Arrays.sort(samples);
+        long p50 = samples[samples.length / 2];
+        long p99 = samples[samples.length * 99 / 100];
+
+        assertTrue(found >= PROBES);
+        assertTrue("p99 lookup " + p99 + " ns, p50 " + p50 + " ns", p99 < MAX_P99_LOOKUP_NANOS);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.todoapp;
+
+import android.app.Application;
+import android.os.SystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Robolectric's clock only moves when the test moves it, so SystemClock.sleep here stands
+ * in for the work between milestones and every offset is exact.
+ */
+@RunWith(RobolectricTestRunner.class)
+// A plain Application, so TodoApplication's own startup doesn't add marks of its own
+@Config(application = Application.class, sdk = 28)
+public class StartupTraceTest {
+
+    @Before
+    public void setUp() {
+        StartupTrace.reset();
+    }
+
+    @Test
+    public void sectionsAreTimedFromProcessStart() {
+        StartupTrace.start();
+        SystemClock.sleep(120);
+        StartupTrace.beginSection(StartupTrace.DB_OPEN);
+        SystemClock.sleep(30);
+        StartupTrace.endSection(StartupTrace.DB_OPEN);
+        SystemClock.sleep(200);
+        StartupTrace.mark(StartupTrace.FIRST_EMISSION);
+        SystemClock.sleep(16);
+        StartupTrace.mark(StartupTrace.FIRST_BIND);
+
+        List<String> marks = StartupTrace.getMarks();
+        assertEquals(marks.toString(), 4, marks.size());
+        long processStart = offset(marks, StartupTrace.PROCESS_START);
+        // The section's mark lands when it ends
+        assertEquals(150, offset(marks, StartupTrace.DB_OPEN) - processStart);
+        assertEquals(350, offset(marks, StartupTrace.FIRST_EMISSION) - processStart);
+        assertEquals(366, offset(marks, StartupTrace.FIRST_BIND) - processStart);
+    }
+
+    @Test
+    public void eachMilestoneIsRecordedOnce() {
+        StartupTrace.start();
+        SystemClock.sleep(50);
+        StartupTrace.mark(StartupTrace.FIRST_BIND);
+        // Later binds, and a second start, leave the first ones alone
+        SystemClock.sleep(50);
+        StartupTrace.mark(StartupTrace.FIRST_BIND);
+        StartupTrace.start();
+
+        List<String> marks = StartupTrace.getMarks();
+        assertEquals(marks.toString(), 2, marks.size());
+        assertEquals(50, offset(marks, StartupTrace.FIRST_BIND) - offset(marks, StartupTrace.PROCESS_START));
+    }
+
+    @Test
+    public void marksBeforeStartAreIgnored() {
+        StartupTrace.mark(StartupTrace.FIRST_EMISSION);
+        StartupTrace.beginSection(StartupTrace.DB_OPEN);
+        StartupTrace.endSection(StartupTrace.DB_OPEN);
+
+        assertTrue(StartupTrace.getMarks().isEmpty());
+    }
+
+    @Test
+    @Config(sdk = 23)
+    public void beforeNougatProcessStartIsTheFirstMark() {
+        SystemClock.sleep(500);
+        StartupTrace.start();
+        SystemClock.sleep(40);
+        StartupTrace.mark(StartupTrace.FIRST_EMISSION);
+
+        List<String> marks = StartupTrace.getMarks();
+        assertEquals(0, offset(marks, StartupTrace.PROCESS_START));
+        assertEquals(40, offset(marks, StartupTrace.FIRST_EMISSION));
+    }
+
+    // Marks read "name=123ms"
+    private static long offset(List<String> marks, String name) {
+        for (String mark : marks) {
+            if (mark.startsWith(name + "=")) {
+                return Long.parseLong(mark.substring(name.length() + 1, mark.length() - 2));
+            }
+        }
+        throw new AssertionError(name + " not in " + marks);
+    }
+}
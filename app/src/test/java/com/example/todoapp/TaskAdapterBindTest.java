@@ -0,0 +1,165 @@
+package com.example.todoapp;
+
+import android.app.Application;
+import android.view.ContextThemeWrapper;
+import android.widget.FrameLayout;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagedList;
+import androidx.paging.PositionalDataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls 10k rows through a few recycled holders, as RecyclerView does, and measures what
+ * TaskAdapter.onBindViewHolder allocates per bind on the main thread.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class, sdk = 28)
+public class TaskAdapterBindTest {
+    private static final int ROWS = 10_000;
+    // About a screen of cards plus RecyclerView's cache
+    private static final int HOLDERS = 12;
+    // Rows with comments build their activity line
+    private static final long MAX_BYTES_PER_ACTIVITY_BIND = 1024;
+    // Everything else reuses existing objects; what is left is the check box's state change
+    private static final long MAX_BYTES_PER_PLAIN_BIND = 256;
+    private static final int REBINDS = 1_000;
+    private static final long NOW = System.currentTimeMillis();
+
+    private final Executor direct = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private TaskAdapter adapter;
+    private List<TaskAdapter.TaskViewHolder> holders;
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setUp() {
+        ContextThemeWrapper context = new ContextThemeWrapper(RuntimeEnvironment.getApplication(), R.style.AppTheme);
+        adapter = new TaskAdapter(context);
+        adapter.submitList(pagedList(rows()));
+        assertEquals(ROWS, adapter.getItemCount());
+
+        FrameLayout parent = new FrameLayout(context);
+        holders = new ArrayList<>(HOLDERS);
+        for (int i = 0; i < HOLDERS; i++) {
+            holders.add(adapter.onCreateViewHolder(parent, 0));
+        }
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void scrollingRowsWithoutCommentsStaysWithinTheBindBudget() {
+        // The first pass pays for class loading, the JIT and the cached time labels
+        scroll(false);
+
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        int binds = scroll(false);
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        long perBind = allocated / binds;
+        assertTrue(perBind + " bytes per bind", perBind <= MAX_BYTES_PER_PLAIN_BIND);
+    }
+
+    @Test
+    public void scrollingRowsWithCommentsStaysWithinTheBindBudget() {
+        scroll(true);
+
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        int binds = scroll(true);
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        long perBind = allocated / binds;
+        assertTrue(perBind + " bytes per bind", perBind <= MAX_BYTES_PER_ACTIVITY_BIND);
+    }
+
+    @Test
+    public void rebindingAnUnchangedRowAllocatesNothing() {
+        TaskAdapter.TaskViewHolder holder = holders.get(0);
+        // A row with comments from over an hour ago, so its label can't move on during the test
+        int position = ROWS / 2;
+        adapter.onBindViewHolder(holder, position);
+        CharSequence activity = holder.activityTextView.getText();
+        for (int i = 0; i < REBINDS; i++) {
+            adapter.onBindViewHolder(holder, position);
+        }
+
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < REBINDS; i++) {
+            adapter.onBindViewHolder(holder, position);
+        }
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertEquals(0, allocated);
+        assertSame(activity, holder.activityTextView.getText());
+    }
+
+    // Binds every row with or without comments through the recycled holders, returning the count
+    private int scroll(boolean withComments) {
+        int binds = 0;
+        for (int position = 0; position < ROWS; position++) {
+            if ((position % 4 == 0) == withComments) {
+                adapter.onBindViewHolder(holders.get(binds % HOLDERS), position);
+                binds++;
+            }
+        }
+        return binds;
+    }
+
+    private static List<TaskSummary> rows() {
+        List<TaskSummary> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            // Matches the split in scroll()
+            boolean hasComments = i % 4 == 0;
+            rows.add(new TaskSummary(i + 1, "Task " + i, i % 3 + 1, i % 5 == 0,
+                    hasComments ? i % 7 + 1 : 0,
+                    hasComments ? NOW - (i % 120) * CommentTimeFormatter.MINUTE_MS : 0));
+        }
+        return rows;
+    }
+
+    // Every row is loaded up front, so scrolling binds without loading pages
+    private PagedList<TaskSummary> pagedList(final List<TaskSummary> rows) {
+        PositionalDataSource<TaskSummary> dataSource = new PositionalDataSource<TaskSummary>() {
+            @Override
+            public void loadInitial(@NonNull LoadInitialParams params, @NonNull LoadInitialCallback<TaskSummary> callback) {
+                callback.onResult(rows, 0, rows.size());
+            }
+
+            @Override
+            public void loadRange(@NonNull LoadRangeParams params, @NonNull LoadRangeCallback<TaskSummary> callback) {
+                int end = Math.min(rows.size(), params.startPosition + params.loadSize);
+                callback.onResult(rows.subList(params.startPosition, end));
+            }
+        };
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(30)
+                .setInitialLoadSizeHint(ROWS)
+                .setEnablePlaceholders(false)
+                .build();
+        return new PagedList.Builder<>(dataSource, config)
+                .setNotifyExecutor(direct)
+                .setFetchExecutor(direct)
+                .build();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.todoapp;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TaskSearchResultTest {
+    private static final double[] WEIGHTS = {2.0, 1.0};
+
+    @Test
+    public void toMatchQuery_makesEveryWordAPrefixTerm() {
+        assertEquals("buy* milk*", TaskSearchResult.toMatchQuery("buy milk"));
+    }
+
+    @Test
+    public void toMatchQuery_dropsFtsSyntaxAndPunctuation() {
+        assertEquals("a* b* c*", TaskSearchResult.toMatchQuery("  a\"  -b*(c) "));
+        assertEquals("café* 2024*", TaskSearchResult.toMatchQuery("café, 2024!"));
+    }
+
+    @Test
+    public void toMatchQuery_returnsNullWhenNothingIsSearchable() {
+        assertNull(TaskSearchResult.toMatchQuery(null));
+        assertNull(TaskSearchResult.toMatchQuery(""));
+        assertNull(TaskSearchResult.toMatchQuery(" *\"- "));
+    }
+
+    @Test
+    public void score_weighsHitsByColumnAndRarity() {
+        // One phrase, two columns: 1 of 4 hits in the title, 2 of 2 in the description
+        byte[] matchInfo = matchInfo(1, 2, new int[][]{{1, 4, 3}, {2, 2, 1}});
+        assertEquals(2.0 * 1 / 4 + 1.0 * 2 / 2, TaskSearchResult.score(matchInfo, WEIGHTS), 1e-9);
+    }
+
+    @Test
+    public void score_sumsOverPhrases() {
+        byte[] matchInfo = matchInfo(2, 1, new int[][]{{1, 2, 2}, {3, 3, 1}});
+        assertEquals(0.5 * 1 / 2 + 0.5 * 3 / 3,
+                TaskSearchResult.score(matchInfo, new double[]{0.5}), 1e-9);
+    }
+
+    @Test
+    public void score_toleratesMissingAndTruncatedBlobs() {
+        assertEquals(0, TaskSearchResult.score(null, WEIGHTS), 0);
+        assertEquals(0, TaskSearchResult.score(new byte[4], WEIGHTS), 0);
+        byte[] full = matchInfo(1, 2, new int[][]{{1, 1, 1}, {1, 1, 1}});
+        byte[] truncated = Arrays.copyOf(full, full.length - 12);
+        assertEquals(2.0, TaskSearchResult.score(truncated, WEIGHTS), 1e-9);
+    }
+
+    @Test
+    public void rank_ordersTasksByCombinedScoreAndKeepsTheBestHit() {
+        TaskSearchResult.Hit weakTask = new TaskSearchResult.Hit(1, 1, false,
+                matchInfo(1, 2, new int[][]{{0, 4, 2}, {1, 4, 2}}));
+        TaskSearchResult.Hit strongTask = new TaskSearchResult.Hit(2, 2, false,
+                matchInfo(1, 2, new int[][]{{1, 1, 1}, {0, 4, 2}}));
+        // A comment on task 1 that outscores task 1's own hit
+        TaskSearchResult.Hit comment = new TaskSearchResult.Hit(10, 1, true,
+                matchInfo(1, 1, new int[][]{{2, 2, 1}}));
+
+        List<TaskSearchResult.Hit> ranked = TaskSearchResult.rank(
+                Arrays.asList(weakTask, strongTask), Collections.singletonList(comment), 10);
+
+        assertEquals(2, ranked.size());
+        assertEquals(2, ranked.get(0).getTaskId());
+        assertEquals(1, ranked.get(1).getTaskId());
+        assertTrue(ranked.get(1).isFromComment());
+        assertEquals(0.25 + 0.5, ranked.get(1).getScore(), 1e-9);
+    }
+
+    @Test
+    public void rank_keepsOnlyTheTopResults() {
+        TaskSearchResult.Hit a = new TaskSearchResult.Hit(1, 1, false, matchInfo(1, 1, new int[][]{{1, 4, 1}}));
+        TaskSearchResult.Hit b = new TaskSearchResult.Hit(2, 2, false, matchInfo(1, 1, new int[][]{{4, 4, 1}}));
+        TaskSearchResult.Hit c = new TaskSearchResult.Hit(3, 3, false, matchInfo(1, 1, new int[][]{{2, 4, 1}}));
+
+        List<TaskSearchResult.Hit> ranked = TaskSearchResult.rank(
+                Arrays.asList(a, b, c), Collections.<TaskSearchResult.Hit>emptyList(), 2);
+
+        assertEquals(2, ranked.size());
+        assertEquals(2, ranked.get(0).getTaskId());
+        assertEquals(3, ranked.get(1).getTaskId());
+    }
+
+    @Test
+    public void inRankOrder_followsTheRankingAndSkipsDeletedRows() {
+        TaskSearchResult.Hit first = new TaskSearchResult.Hit(5, 5, false, matchInfo(1, 1, new int[][]{{2, 2, 1}}));
+        TaskSearchResult.Hit second = new TaskSearchResult.Hit(9, 7, true, matchInfo(1, 1, new int[][]{{1, 2, 1}}));
+        TaskSearchResult.Hit deleted = new TaskSearchResult.Hit(8, 8, false, matchInfo(1, 1, new int[][]{{1, 4, 1}}));
+        List<TaskSearchResult.Hit> ranked = TaskSearchResult.rank(
+                Arrays.asList(first, deleted), Collections.singletonList(second), 10);
+
+        List<TaskSearchResult> results = TaskSearchResult.inRankOrder(ranked,
+                Collections.singletonList(new TaskSearchResult(5, "Five", 2, false, "<b>five</b>")),
+                Collections.singletonList(new TaskSearchResult(7, "Seven", 1, true, "<b>seven</b>")));
+
+        assertEquals(2, results.size());
+        assertEquals(5, results.get(0).getId());
+        assertEquals(7, results.get(1).getId());
+        assertEquals(ranked.get(0).getScore(), results.get(0).getScore(), 0);
+    }
+
+    // matchinfo('pcx') layout: phrases, columns, then (hits in row, hits in all rows, rows with hits)
+    private static byte[] matchInfo(int phrases, int columns, int[][] perPhraseColumn) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 12 * perPhraseColumn.length).order(ByteOrder.nativeOrder());
+        buffer.putInt(phrases).putInt(columns);
+        for (int[] values : perPhraseColumn) {
+            buffer.putInt(values[0]).putInt(values[1]).putInt(values[2]);
+        }
+        return buffer.array();
+    }
+}